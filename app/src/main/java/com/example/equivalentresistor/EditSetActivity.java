@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import optimizer.Inventory;
+
 public class EditSetActivity extends AppCompatActivity {
 
     private final static String TAG = "EditSetActivity";
@@ -93,13 +95,13 @@ public class EditSetActivity extends AppCompatActivity {
             public void onClick(View v)
             {
                 clearHoldersFocus();
-                List<Double> resistances = allDataLegal();
-                if(resistances != null && resistances.size() != 0) {
+                Inventory inventory = allDataLegal();
+                if(inventory != null && inventory.size() != 0) {
                     // All inputted data are valid.
                     String fileBody = genFileBody();
                     try {
                         writeFileOnInternalStorage(v.getContext(), mSetName, fileBody);
-                        ResistorModel.getInstance().setResistances(resistances);
+                        ResistorModel.getInstance().setInventory(inventory);
                         startActivity(MainActivity.getIntent(v.getContext()));
                     } catch (IOException e) {
                         Toast.makeText(v.getContext(), getResources().getText(R.string.cant_write), Toast.LENGTH_LONG).show();
@@ -134,26 +136,24 @@ public class EditSetActivity extends AppCompatActivity {
         return result;
     }
 
-    private List<Double> allDataLegal() {
+    private Inventory allDataLegal() {
         boolean returnNull = false;
         int size = mResistorEntries.size();
-        List<Double> resistances = new ArrayList<>();
+        double[] resistances = new double[size];
+        int[] quantities = new int[size];
         for(int i = 0; i < size; i++) {
             String[] entry = mResistorEntries.get(i);
             Boolean[] legals = mLegalValues.get(i);
-            double resistance = 0;
             try {
-                resistance = getPositiveDouble(entry[0]);
+                resistances[i] = getPositiveDouble(entry[0]);
                 legals[0] = true;
             } catch(NumberFormatException e) {
                 legals[0] = false;
                 returnNull = true;
             }
             try {
-                int qty = getPositiveInt(entry[1]);
+                quantities[i] = getPositiveInt(entry[1]);
                 legals[1] = true;
-                for(int qty_i = 0;legals[0] &&  qty_i  <qty; qty_i++)
-                    resistances.add(resistance);
             } catch(NumberFormatException e) {
                 legals[1] = false;
                 returnNull = true;
@@ -161,7 +161,7 @@ public class EditSetActivity extends AppCompatActivity {
         }
         if(returnNull)
             return null;
-        return resistances;
+        return new Inventory(resistances, quantities);
     }
 
     private List<String[]> getFileData(String fileName) throws IOException {
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -41,6 +42,11 @@ public class MainActivity extends AppCompatActivity {
     private static final String SIZES = "com.example.equivalentresistor.sizes";
     private static final String GOAL = "com.example.equivalentresistor.goal";
     public static final String SEARCH = "com.example.equivalentresistor.searchs";
+    /**
+     * Longest a search may take. The best circuits found by then are shown, so slow devices get
+     * slightly worse circuits instead of a longer wait.
+     */
+    private static final long SEARCH_BUDGET_MILLIS = 3000;
 
 
     private ViewPager mViewPager;
@@ -206,17 +212,19 @@ public class MainActivity extends AppCompatActivity {
 
     public static void fillModel(File dataFile) throws IOException {
         BufferedReader br = new BufferedReader(new FileReader(dataFile));
-        List<Double> resistances = new ArrayList<>();
+        List<String[]> lines = new ArrayList<>();
         String line;
-        while ((line = br.readLine()) != null) {
-            String[] elements = line.trim().split(" ");
-            double resistance = Double.parseDouble(elements[0]);
-            int qty = Integer.parseInt(elements[1]);
-            for(int qty_i = 0; qty_i < qty; qty_i ++)
-                resistances.add(resistance);
+        while ((line = br.readLine()) != null)
+            lines.add(line.trim().split(" "));
+        double[] resistances = new double[lines.size()];
+        int[] quantities = new int[lines.size()];
+        for(int i = 0; i < resistances.length; i ++) {
+            String[] elements = lines.get(i);
+            resistances[i] = Double.parseDouble(elements[0]);
+            quantities[i] = Integer.parseInt(elements[1]);
         }
         ResistorModel model = ResistorModel.getInstance();
-        model.setResistances(resistances);
+        model.setInventory(new Inventory(resistances, quantities));
     }
 
     /*
@@ -256,6 +264,14 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void setPagerWithResults() {
+        showResults();
+        mSearchButton.setEnabled(true);
+    }
+
+    /*
+    Shows the current results without ending the search.
+     */
+    private void showResults() {
         FragmentManager fragmentManager = getSupportFragmentManager();
         mViewPager.setAdapter(new FragmentStatePagerAdapter(fragmentManager) {
             @Override
@@ -272,7 +288,6 @@ public class MainActivity extends AppCompatActivity {
                 return mVisuals.length;
             }
         });
-        mSearchButton.setEnabled(true);
     }
 
     private void setPagerWithMessage(final String message) {
@@ -295,7 +310,17 @@ public class MainActivity extends AppCompatActivity {
         mViewPager.setCurrentItem(0);
     }
 
-    private class RunOptimizer extends AsyncTask<Double,Void,ResultsWrapper> {
+    private class RunOptimizer extends AsyncTask<Double,ResultsWrapper,ResultsWrapper> {
+        private final CancellationToken mToken = new CancellationToken(SEARCH_BUDGET_MILLIS);
+
+        /*
+        Cancels the task and frees the threads of the optimizer as soon as possible.
+         */
+        void stop() {
+            mToken.cancel();
+            cancel(false);
+        }
+
         // Code to run in the background.
         // Void… params means to put the remaining arguments into an array of type Void named params.
         // Works only as the last argument.
@@ -306,37 +331,63 @@ public class MainActivity extends AppCompatActivity {
             Log.d(TAG, "Desired resistance: " + searchDouble);
             Log.d(TAG, "Size priority: " + compactPriority);
 
-            double[] resistances = mModel.getResistancesArr();
-            int TOP = 10;
-            List<Queue<DNADecipherUnit>> queues = MainOptimizer.runAndGetQueues(resistances, searchDouble, (int)compactPriority, 3000, 3, 50, TOP);
-
-            int size = queues.size();
-            String[] visuals = new String[size];
-            double[] totalResistances = new double[size];
-            int[] ranks = new int[size];
-            int[] sizes = new int[size];
-
-            for(int i = 0; i < size; i ++) {
-                Queue<DNADecipherUnit> queue = queues.get(i);
-                DNADecipherUnit first = queue.peek();
-                DNA instructions = first.getDNA();
-
-                String visual = EvolveOptimalResistors.visualizeDNA(queue, false);
-                double totalResistance = instructions.getTotalResistance();
-                int rank = instructions.getRank();
-                int resistorSize = instructions.getSize();
-
-                visuals[i] = visual;
-                totalResistances[i] = totalResistance;
-                ranks[i] = rank;
-                sizes[i] = resistorSize;
+            ResultCache cache = ResultCache.getInstance(MainActivity.this);
+            String key = ResultCache.key(mModel.getInventory(), searchDouble, (int)compactPriority);
+            ResultsWrapper cached = cache.get(key);
+            if(cached != null) {
+                Log.d(TAG, "Reusing the results of an earlier search.");
+                return cached;
+            }
+
+            // Searches against the same set share one index, which answers small circuits instantly.
+            AchievableIndex index;
+            try {
+                index = mModel.getIndex(mToken);
+            } catch (CancellationException e) {
+                Log.d(TAG, "Search stopped while building the index.");
+                return null;
             }
-            return new ResultsWrapper(visuals, totalResistances, ranks, sizes);
+            // The first search against a set builds the index, which must not eat into its budget.
+            mToken.restartBudget();
+            // The set may have changed since the lookup.
+            key = ResultCache.key(index.getInventory(), searchDouble, (int)compactPriority);
+
+            int TOP = 10;
+            // Shows the best circuits found so far while the rest of the generations run.
+            ProgressListener listener = new ProgressListener() {
+                @Override
+                public void onProgress(int generation, List<Queue<DNADecipherUnit>> mostFit) {
+                    publishProgress(toResults(mostFit));
+                }
+            };
+            List<Queue<DNADecipherUnit>> queues = MainOptimizer.runAndGetQueues(index, searchDouble, (int)compactPriority, 3000, 3, 50, TOP, listener, mToken);
+
+            ResultsWrapper results = toResults(queues);
+            // A search stopped by cancel() or by its budget is cut short, and remembering it would
+            // serve the worse circuits for good.
+            if(!mToken.wasStopRequested())
+                cache.put(key, results);
+            return results;
         }
 
+        @Override
+        protected void onProgressUpdate(ResultsWrapper... progress) {
+            // Only the latest results matter if several were published at once.
+            ResultsWrapper results = progress[progress.length - 1];
+            int current = mVisuals.length == 0 ? 0 : mViewPager.getCurrentItem();
+            mVisuals = results.mVisuals;
+            mTotalResistances = results.mTotalResistances;
+            mRanks = results.mRanks;
+            mSizes = results.mSizes;
+            showResults();
+            // Keeps the page the user is looking at while the results improve.
+            mViewPager.setCurrentItem(Math.min(current, mVisuals.length - 1), false);
+        }
 
         @Override
         protected void onPostExecute(ResultsWrapper results) {
+            if(results == null)
+                return;
             // Best practice to change UI components in main thread.
             mVisuals = results.mVisuals;
             mTotalResistances = results.mTotalResistances;
@@ -346,6 +397,31 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private static ResultsWrapper toResults(List<Queue<DNADecipherUnit>> queues) {
+        int size = queues.size();
+        String[] visuals = new String[size];
+        double[] totalResistances = new double[size];
+        int[] ranks = new int[size];
+        int[] sizes = new int[size];
+
+        for(int i = 0; i < size; i ++) {
+            Queue<DNADecipherUnit> queue = queues.get(i);
+            DNADecipherUnit first = queue.peek();
+            DNA instructions = first.getDNA();
+
+            String visual = EvolveOptimalResistors.visualizeDNA(queue, false);
+            double totalResistance = instructions.getTotalResistance();
+            int rank = instructions.getRank();
+            int resistorSize = instructions.getSize();
+
+            visuals[i] = visual;
+            totalResistances[i] = totalResistance;
+            ranks[i] = rank;
+            sizes[i] = resistorSize;
+        }
+        return new ResultsWrapper(visuals, totalResistances, ranks, sizes);
+    }
+
     static class ResultsWrapper {
         String[] mVisuals;
         double[] mTotalResistances;
@@ -394,7 +470,7 @@ public class MainActivity extends AppCompatActivity {
         super.onDestroy();
         Log.d(TAG, "MainActivity onDestroy() called.");
         if(mOptimizer != null)
-            mOptimizer.cancel(false);
+            mOptimizer.stop();
     }
 
 }
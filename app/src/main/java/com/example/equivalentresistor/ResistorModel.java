@@ -1,41 +1,51 @@
 package com.example.equivalentresistor;
 
-import java.util.ArrayList;
-import java.util.List;
+import optimizer.AchievableIndex;
+import optimizer.CancellationToken;
+import optimizer.Inventory;
 
 class ResistorModel {
 
     private static final ResistorModel mModel = new ResistorModel();
-    private List<Double> mResistances = new ArrayList<>();
+    private Inventory mInventory = new Inventory(new double[0], new int[0]);
+    /**
+     * Built on the first search against mInventory and reused until the inventory changes.
+     */
+    private AchievableIndex mIndex;
 
     static ResistorModel getInstance() {
         return mModel;
     }
 
-    public int getSize() {
-        return mResistances.size();
+    /**
+     * Number of distinct resistances.
+     */
+    public synchronized int getSize() {
+        return mInventory.size();
     }
 
-    public void setResistances(List<Double> resistances) {
-        mResistances = resistances;
+    public synchronized void setInventory(Inventory inventory) {
+        mInventory = inventory;
+        mIndex = null;
     }
 
-    public void setResistances(double[] resistances) {
-        mResistances.clear();
-        for(double resistance : resistances)
-            mResistances.add(resistance);
+    public synchronized Inventory getInventory() {
+        return mInventory;
     }
 
-    public List<Double> getResistancesList()  {
-        return mResistances;
+    /**
+     * Index of the current inventory. Builds it if needed, so call it off the UI thread.
+     * @param token Stops the build once cancelled, in which case nothing is kept. May be null.
+     * @throws java.util.concurrent.CancellationException If token is cancelled during the build.
+     */
+    public synchronized AchievableIndex getIndex(CancellationToken token) {
+        if(mIndex == null)
+            mIndex = new AchievableIndex(mInventory, token);
+        return mIndex;
     }
 
-    public double[] getResistancesArr() {
-        int size = mResistances.size();
-        double[] arr = new double[size];
-        for(int i = 0; i < size; i++)
-            arr[i] = mResistances.get(i);
-        return arr;
+    public synchronized void clear() {
+        setInventory(new Inventory(new double[0], new int[0]));
     }
 
     // Private since you cannot construct this class.
@@ -58,7 +58,7 @@ public class ResistorSetsAdapter extends RecyclerView.Adapter<ResistorSetsAdapte
                         return;
                     String name = mNames.remove(pos);
                     if(name.charAt(0) == '~')
-                        ResistorModel.getInstance().setResistances(new double[0]);
+                        ResistorModel.getInstance().clear();
                     MainActivity.removeFile(v.getContext(), name);
                     mAdapter.notifyItemRemoved(pos);
                     mAdapter.notifyItemRangeChanged(pos, mNames.size());
@@ -0,0 +1,185 @@
+package com.example.equivalentresistor;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import optimizer.Inventory;
+
+/**
+ * Remembers search results so repeated searches against the same set return immediately.
+ *
+ * Results are keyed by the content of the set, the desired resistance and the size priority. The
+ * most recent results are kept in memory, and every result is also written to a small directory in
+ * internal storage so it survives the app being closed. The least recently used files are deleted
+ * once the directory grows past MAX_DISK_BYTES.
+ *
+ * Nothing is cleared when a set is saved or deleted. A changed set has a different key, so its old
+ * results are never looked up again and age out like any other file.
+ */
+class ResultCache {
+    private static final String TAG = "ResultCache";
+    private static final String CACHE_DIR_NAME = "results";
+    /**
+     * Bumped whenever the file format changes so old files are ignored.
+     */
+    private static final int VERSION = 1;
+    private static final int MAX_MEMORY_ENTRIES = 32;
+    private static final long MAX_DISK_BYTES = 256 * 1024;
+
+    private static ResultCache mCache;
+
+    private final File mDir;
+    private final Map<String, MainActivity.ResultsWrapper> mMemory =
+            new LinkedHashMap<String, MainActivity.ResultsWrapper>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MainActivity.ResultsWrapper> eldest) {
+                    return size() > MAX_MEMORY_ENTRIES;
+                }
+            };
+
+    static synchronized ResultCache getInstance(Context context) {
+        if(mCache == null)
+            mCache = new ResultCache(new File(context.getApplicationContext().getFilesDir(), CACHE_DIR_NAME));
+        return mCache;
+    }
+
+    // Private since there is one cache per app.
+    private ResultCache(File dir) {
+        mDir = dir;
+    }
+
+    /**
+     * Key of a search.
+     * @param inventory Set that is searched.
+     * @param desiredResistance Resistance searched for.
+     * @param sizePriority Size priority of the search.
+     * @return Key that is also a legal file name.
+     */
+    static String key(Inventory inventory, double desiredResistance, int sizePriority) {
+        return Long.toHexString(inventory.contentHash()) + "_"
+                + Long.toHexString(Double.doubleToLongBits(desiredResistance)) + "_" + sizePriority;
+    }
+
+    /**
+     * Finds the results of an earlier search.
+     * @param key Key from key(...).
+     * @return Results, or null if the search has not been done.
+     */
+    synchronized MainActivity.ResultsWrapper get(String key) {
+        MainActivity.ResultsWrapper results = mMemory.get(key);
+        if(results != null)
+            return results;
+        File file = new File(mDir, key);
+        if(!file.exists())
+            return null;
+        try {
+            results = read(file);
+        } catch (IOException e) {
+            Log.d(TAG, "Could not read cached results.", e);
+            file.delete();
+            return null;
+        }
+        if(results == null) {
+            file.delete();
+            return null;
+        }
+        // Keeps recently used files from being deleted first.
+        file.setLastModified(System.currentTimeMillis());
+        mMemory.put(key, results);
+        return results;
+    }
+
+    /**
+     * Remembers the results of a search.
+     * @param key Key from key(...).
+     * @param results Results of the search.
+     */
+    synchronized void put(String key, MainActivity.ResultsWrapper results) {
+        mMemory.put(key, results);
+        if(!mDir.exists() && !mDir.mkdir())
+            return;
+        try {
+            write(new File(mDir, key), results);
+        } catch (IOException e) {
+            Log.d(TAG, "Could not write cached results.", e);
+        }
+        trimDisk();
+    }
+
+    private void trimDisk() {
+        File[] files = mDir.listFiles();
+        if(files == null)
+            return;
+        long total = 0;
+        for(File file : files)
+            total += file.length();
+        if(total <= MAX_DISK_BYTES)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                // Oldest first.
+                return Long.valueOf(a.lastModified()).compareTo(b.lastModified());
+            }
+        });
+        for(int i = 0; i < files.length && total > MAX_DISK_BYTES; i ++) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    private static void write(File file, MainActivity.ResultsWrapper results) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            int size = results.mVisuals.length;
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            for(int i = 0; i < size; i ++) {
+                out.writeUTF(results.mVisuals[i]);
+                out.writeDouble(results.mTotalResistances[i]);
+                out.writeInt(results.mRanks[i]);
+                out.writeInt(results.mSizes[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return Results, or null if the file was written by another version.
+     */
+    private static MainActivity.ResultsWrapper read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if(in.readInt() != VERSION)
+                return null;
+            int size = in.readInt();
+            String[] visuals = new String[size];
+            double[] totalResistances = new double[size];
+            int[] ranks = new int[size];
+            int[] sizes = new int[size];
+            for(int i = 0; i < size; i ++) {
+                visuals[i] = in.readUTF();
+                totalResistances[i] = in.readDouble();
+                ranks[i] = in.readInt();
+                sizes[i] = in.readInt();
+            }
+            return new MainActivity.ResultsWrapper(visuals, totalResistances, ranks, sizes);
+        } finally {
+            in.close();
+        }
+    }
+}
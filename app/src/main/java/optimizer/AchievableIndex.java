@@ -0,0 +1,294 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Every resistance that can be built from an inventory with a few resistors, sorted so the
+ * circuits nearest to any desired resistance are found by binary search.
+ *
+ * The index does not depend on the desired resistance, so it is built once per inventory and
+ * reused by every search against it. How each resistance is built is kept as an entry of the
+ * underlying SubnetworkTable.
+ */
+public class AchievableIndex {
+    /**
+     * Most circuits kept in the index. With their table entries they take about 60 bytes each, so
+     * the index stays under 8 MB. Inventories with many distinct resistances index fewer parts per
+     * circuit, see maxParts(...).
+     */
+    private static final int MAX_ENTRIES = 1 << 17;
+    /**
+     * Most parts per circuit, reached when the inventory is small enough.
+     */
+    public static final int MAX_PARTS = 3;
+
+    private final Inventory mInventory;
+    private final SubnetworkTable mTable;
+    private final int mMaxParts;
+    /**
+     * Resistances of the circuits with n parts in ascending order, and the table entry of each.
+     */
+    private final double[][] mResistances;
+    private final int[][] mEntries;
+
+    /**
+     * Constructor. Builds the index.
+     * @param inventory Available resistors.
+     */
+    public AchievableIndex(Inventory inventory) {
+        this(inventory, null);
+    }
+
+    /**
+     * Same as above, but the build stops once token is cancelled. Running out of the token's budget
+     * does not stop it, since a partial index is of no use.
+     * @param inventory Available resistors.
+     * @param token Token, or null to always finish.
+     * @throws CancellationException If token is cancelled before the index is built.
+     */
+    public AchievableIndex(Inventory inventory, CancellationToken token) {
+        mInventory = inventory;
+        mMaxParts = maxParts(inventory.size());
+        mTable = new SubnetworkTable(inventory, mMaxParts, token);
+        mResistances = new double[mMaxParts + 1][];
+        mEntries = new int[mMaxParts + 1][];
+        for(int n = 1; n <= mMaxParts; n ++) {
+            SubnetworkTable.checkCancelled(token);
+            int start = mTable.getLevelStart(n);
+            int length = mTable.getLevelEnd(n) - start;
+            double[] resistances = new double[length];
+            int[] entries = new int[length];
+            for(int i = 0; i < length; i ++) {
+                resistances[i] = mTable.getResistance(start + i);
+                entries[i] = start + i;
+            }
+            sort(resistances, entries, 0, length - 1);
+            mResistances[n] = resistances;
+            mEntries[n] = entries;
+        }
+    }
+
+    /**
+     * Most parts per circuit that keeps the index under MAX_ENTRIES, assuming about 2^(n-1) * d^n
+     * circuits of n parts for d distinct resistances. With MAX_ENTRIES = 2^17 that allows 3 parts
+     * while 4 * d^3 <= 2^17, that is up to d = 32, and 2 parts while 2 * d^2 <= 2^17, up to d = 256.
+     */
+    static int maxParts(int numDistinct) {
+        int maxParts = 1;
+        double numCircuits = numDistinct;
+        while(maxParts < MAX_PARTS) {
+            double next = numCircuits * numDistinct * 2;
+            if(next > MAX_ENTRIES)
+                break;
+            numCircuits = next;
+            maxParts ++;
+        }
+        return maxParts;
+    }
+
+    /**
+     * Finds the circuit nearest to target. Circuits with fewer parts win ties.
+     * @param target Desired resistance.
+     * @param maxParts Most parts in the circuit. Limited to getMaxParts().
+     * @return Table entry of the circuit, for getResistance(...), getNumParts(...) and toDNA(...).
+     */
+    public int nearest(double target, int maxParts) {
+        if(maxParts < 1)
+            throw new IllegalArgumentException("A circuit needs at least one part.");
+        int best = -1;
+        double bestDiff = Double.POSITIVE_INFINITY;
+        for(int n = 1; n <= Math.min(maxParts, mMaxParts); n ++) {
+            double[] resistances = mResistances[n];
+            int i = lowerBound(resistances, target);
+            for(int j = i - 1; j <= i; j ++) {
+                if(j < 0 || j >= resistances.length)
+                    continue;
+                double diff = Math.abs(resistances[j] - target);
+                if(diff < bestDiff) {
+                    bestDiff = diff;
+                    best = mEntries[n][j];
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the most fit circuits in the index under the same fitness as EvolveOptimalResistors.
+     * The table only stores structurally distinct circuits, so none is returned twice.
+     * @param target Desired resistance.
+     * @param sizePriority Priority of small circuits over accurate ones, between [0, 100].
+     * @param numTop Number of circuits to return.
+     * @return DNA over getAvailableResistors(), most fit first, with fitness, total resistance,
+     *         size and rank set.
+     */
+    public DNA[] mostFitDNA(final double target, final int sizePriority, int numTop) {
+        // Within one size fitness only depends on the distance to target, so the numTop nearest
+        // circuits of every size hold the numTop most fit circuits.
+        List<Integer> candidates = new ArrayList<>();
+        for(int n = 1; n <= mMaxParts; n ++) {
+            double[] resistances = mResistances[n];
+            int below = lowerBound(resistances, target) - 1;
+            int above = below + 1;
+            int found = 0;
+            while(found < numTop && (below >= 0 || above < resistances.length)) {
+                int next;
+                if(above >= resistances.length || (below >= 0 && target - resistances[below] <= resistances[above] - target))
+                    next = below--;
+                else
+                    next = above++;
+                candidates.add(mEntries[n][next]);
+                found ++;
+            }
+        }
+
+        Collections.sort(candidates, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                // Descending order.
+                return Double.compare(fitness(b, target, sizePriority), fitness(a, target, sizePriority));
+            }
+        });
+        List<DNA> top = new ArrayList<>();
+        for(int i = 0; i < candidates.size() && top.size() < numTop; i ++) {
+            int entry = candidates.get(i);
+            DNA one = mTable.toDNA(entry);
+            one.setFitness(fitness(entry, target, sizePriority));
+            one.setTotalResistance(getResistance(entry));
+            one.setSize(getNumParts(entry));
+            one.setRank(top.size() + 1);
+            top.add(one);
+        }
+        return top.toArray(new DNA[0]);
+    }
+
+    /**
+     * Whether no circuit outside the index can be more fit than best, in which case searching
+     * further is pointless. Any circuit with more than getMaxParts() parts is at best an exact
+     * match of getMaxParts() + 1 parts.
+     * @param best Most fit circuit from mostFitDNA(...).
+     * @param target Desired resistance.
+     * @param sizePriority Priority used to find best.
+     * @return True if best is the most fit circuit the inventory can build.
+     */
+    public boolean isBestPossible(DNA best, double target, int sizePriority) {
+        double bound = EvolveOptimalResistors.inverseWeightedSum(target, sizePriority, target, mMaxParts + 1);
+        return best.getFitness() >= bound;
+    }
+
+    /**
+     * Converts DNA from mostFitDNA(...) into RPN queues like EvolveOptimalResistors.uniqueMostFitQueues(...).
+     */
+    public List<Queue<DNADecipherUnit>> toQueues(DNA[] dna) {
+        List<Queue<DNADecipherUnit>> queues = new ArrayList<>();
+        for(DNA one : dna)
+            queues.add(EvolveOptimalResistors.RPNQueue(one, mTable.getAvailableResistors()));
+        return queues;
+    }
+
+    private double fitness(int entry, double target, int sizePriority) {
+        return EvolveOptimalResistors.inverseWeightedSum(target, sizePriority, getResistance(entry), getNumParts(entry));
+    }
+
+    public double getResistance(int entry) {
+        return mTable.getResistance(entry);
+    }
+
+    public int getNumParts(int entry) {
+        return SubnetworkTable.numParts(mTable.getParts(entry));
+    }
+
+    public DNA toDNA(int entry) {
+        return mTable.toDNA(entry);
+    }
+
+    /**
+     * Available resistors that the DNA from this index refer to.
+     */
+    public Resistor[] getAvailableResistors() {
+        return mTable.getAvailableResistors();
+    }
+
+    public Inventory getInventory() {
+        return mInventory;
+    }
+
+    /**
+     * Most parts of the circuits in this index.
+     */
+    public int getMaxParts() {
+        return mMaxParts;
+    }
+
+    /**
+     * Resistances of the circuits with n parts, in ascending order.
+     */
+    double[] getSortedResistances(int n) {
+        return mResistances[n];
+    }
+
+    /**
+     * Table entries in the same order as getSortedResistances(n).
+     */
+    int[] getSortedEntries(int n) {
+        return mEntries[n];
+    }
+
+    SubnetworkTable getTable() {
+        return mTable;
+    }
+
+    /**
+     * First index whose resistance is not below target.
+     */
+    private static int lowerBound(double[] arr, double target) {
+        int start = 0, end = arr.length;
+        while(start < end) {
+            int mid = (start + end) >>> 1;
+            if(arr[mid] < target)
+                start = mid + 1;
+            else
+                end = mid;
+        }
+        return start;
+    }
+
+    /**
+     * Sorts keys between [low, high] in ascending order and moves values along with them.
+     */
+    private static void sort(double[] keys, int[] values, int low, int high) {
+        while(low < high) {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low, j = high;
+            while(i <= j) {
+                while(keys[i] < pivot)
+                    i ++;
+                while(keys[j] > pivot)
+                    j --;
+                if(i <= j) {
+                    double key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    int value = values[i];
+                    values[i] = values[j];
+                    values[j] = value;
+                    i ++;
+                    j --;
+                }
+            }
+            // Recurse into the smaller half so the stack stays O(log n).
+            if(j - low < high - i) {
+                sort(keys, values, low, j);
+                low = i;
+            } else {
+                sort(keys, values, i, high);
+                high = j;
+            }
+        }
+    }
+}
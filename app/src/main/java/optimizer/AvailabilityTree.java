@@ -0,0 +1,83 @@
+package optimizer;
+
+/**
+ * Keeps track of which of n positions are still available, like the Fenwick tree in
+ * CollapseKernel. Counting the available positions before an index, finding the k-th available
+ * position and taking or giving back a position are all O(log n), so a sorted array of resistors
+ * can be searched for the closest resistor not used yet without copying or shifting it.
+ */
+class AvailabilityTree {
+    private final int[] mTree;
+    private final int mSize;
+    /**
+     * Highest power of two not greater than mSize.
+     */
+    private final int mHighBit;
+    private int mNumAvailable;
+
+    /**
+     * Constructor. Every position starts available.
+     * @param size Number of positions.
+     */
+    AvailabilityTree(int size) {
+        mSize = size;
+        mTree = new int[size + 1];
+        // Node i of the tree covers (i & -i) positions.
+        for(int i = 1; i <= size; i ++)
+            mTree[i] = i & -i;
+        mHighBit = Integer.highestOneBit(Math.max(size, 1));
+        mNumAvailable = size;
+    }
+
+    int getNumAvailable() {
+        return mNumAvailable;
+    }
+
+    /**
+     * Takes an available position.
+     */
+    void take(int index) {
+        for(int j = index + 1; j <= mSize; j += j & -j)
+            --mTree[j];
+        mNumAvailable --;
+    }
+
+    /**
+     * Gives back a position that was taken.
+     */
+    void giveBack(int index) {
+        for(int j = index + 1; j <= mSize; j += j & -j)
+            ++mTree[j];
+        mNumAvailable ++;
+    }
+
+    /**
+     * Number of available positions before index.
+     */
+    int countBefore(int index) {
+        int count = 0;
+        for(int j = index; j > 0; j -= j & -j)
+            count += mTree[j];
+        return count;
+    }
+
+    /**
+     * Finds the k-th available position, counting from 0.
+     * @param k Between [0, getNumAvailable()).
+     * @return Position.
+     */
+    int select(int k) {
+        int pos = 0;
+        int remaining = k + 1;
+        for(int step = mHighBit; step > 0; step >>= 1) {
+            int next = pos + step;
+            if(next <= mSize && mTree[next] < remaining) {
+                pos = next;
+                remaining -= mTree[next];
+            }
+        }
+        if(pos >= mSize)
+            throw new IllegalArgumentException("There are fewer than k + 1 available positions.");
+        return pos;
+    }
+}
@@ -0,0 +1,129 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves a whole bill of materials against one inventory. The AchievableIndex and the available
+ * resistors are built once and shared by every search, which only reads them, so a list of targets
+ * costs one index instead of one per target.
+ *
+ * Searches run concurrently, one per thread. Every search evolves on its own thread only, since
+ * splitting many small populations across threads gains less than running them side by side.
+ */
+public class BatchOptimizer {
+    private final AchievableIndex mIndex;
+    private CancellationToken mToken;
+
+    /**
+     * Constructor. Builds the index of the inventory.
+     * @param inventory Inventory every target is built from.
+     */
+    public BatchOptimizer(Inventory inventory) {
+        this(new AchievableIndex(inventory));
+    }
+
+    /**
+     * Constructor.
+     * @param index Index of the inventory every target is built from.
+     */
+    public BatchOptimizer(AchievableIndex index) {
+        mIndex = index;
+    }
+
+    /**
+     * Lets every search stop early. See EvolveOptimalResistors.setCancellationToken(...).
+     */
+    public void setCancellationToken(CancellationToken token) {
+        mToken = token;
+    }
+
+    /**
+     * Solves every request.
+     * @param requests Targets to solve.
+     * @param popSize Population of every search.
+     * @param mutationRate Mutation rate, between [0, 100].
+     * @param numGen Most generations of every search.
+     * @param numTop Most circuits returned per target.
+     * @param parallelism Most searches running at once.
+     * @param random Random stream. Every request gets its own stream split from it, in order, so
+     *               the results do not depend on how the searches are scheduled.
+     * @return The circuits of every request, in the order of requests.
+     */
+    public List<List<Queue<DNADecipherUnit>>> solve(List<Request> requests, final int popSize, final int mutationRate,
+                                                    final int numGen, final int numTop, int parallelism, RandomStream random) {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be a positive number.");
+        List<List<Queue<DNADecipherUnit>>> results = new ArrayList<>();
+        if(requests.isEmpty())
+            return results;
+
+        List<Callable<List<Queue<DNADecipherUnit>>>> tasks = new ArrayList<>();
+        for(final Request request : requests) {
+            final RandomStream stream = random.split();
+            tasks.add(new Callable<List<Queue<DNADecipherUnit>>>() {
+                @Override
+                public List<Queue<DNADecipherUnit>> call() {
+                    return MainOptimizer.solve(mIndex, request.getDesiredResistance(), request.getSizePriority(),
+                            popSize, mutationRate, numGen, 1, stream, numTop, null, mToken, false);
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+        try {
+            for(Future<List<Queue<DNADecipherUnit>>> future : executor.invokeAll(tasks))
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while solving requests.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdown();
+        }
+        return results;
+    }
+
+    public AchievableIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * One target of a bill of materials.
+     */
+    public static class Request {
+        private final double mDesiredResistance;
+        private final int mSizePriority;
+
+        /**
+         * Constructor.
+         * @param desiredResistance Resistance to achieve.
+         * @param sizePriority Priority of small circuits over accurate ones, between [0, 100].
+         */
+        public Request(double desiredResistance, int sizePriority) {
+            if(desiredResistance <= 0)
+                throw new IllegalArgumentException("Desired resistance must be a positive number.");
+            if(sizePriority < 0 || sizePriority > 100)
+                throw new IllegalArgumentException("Percentages must be between [0, 100]");
+            mDesiredResistance = desiredResistance;
+            mSizePriority = sizePriority;
+        }
+
+        public double getDesiredResistance() {
+            return mDesiredResistance;
+        }
+
+        public int getSizePriority() {
+            return mSizePriority;
+        }
+    }
+}
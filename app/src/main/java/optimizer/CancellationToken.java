@@ -0,0 +1,88 @@
+package optimizer;
+
+/**
+ * Tells a running search to stop early, either because cancel() was called from another thread or
+ * because its wall-clock budget ran out. Searches check the token between generations and every
+ * few circuits while evaluating fitness, and return the most fit circuits found so far.
+ *
+ * Once a stop is requested it stays requested, so one token is only good for one search.
+ */
+public class CancellationToken {
+    /**
+     * Individuals evaluated between two checks of the token inside a fitness chunk.
+     */
+    static final int CHECK_INTERVAL = 64;
+
+    /**
+     * System.nanoTime() at which the budget runs out.
+     */
+    private volatile long mDeadline;
+    private final long mBudgetNanos;
+    private final boolean mHasDeadline;
+    private volatile boolean mCancelled;
+    /**
+     * Whether isStopRequested() ever returned true.
+     */
+    private volatile boolean mStopRequested;
+
+    /**
+     * Constructor for a token without a budget that only stops once cancelled.
+     */
+    public CancellationToken() {
+        mDeadline = 0;
+        mBudgetNanos = 0;
+        mHasDeadline = false;
+    }
+
+    /**
+     * Constructor for a token that also stops once budgetMillis have passed.
+     * @param budgetMillis Wall-clock budget in milliseconds, counted from now.
+     */
+    public CancellationToken(long budgetMillis) {
+        if(budgetMillis < 0)
+            throw new IllegalArgumentException("Budget must be >= 0.");
+        mBudgetNanos = budgetMillis * 1000000L;
+        mDeadline = System.nanoTime() + mBudgetNanos;
+        mHasDeadline = true;
+    }
+
+    /**
+     * Starts the budget over from now, so work done before, like building an AchievableIndex, does
+     * not count against it. Does nothing for a token without a budget.
+     */
+    public void restartBudget() {
+        mDeadline = System.nanoTime() + mBudgetNanos;
+    }
+
+    /**
+     * Asks the search to stop as soon as possible. Safe to call from any thread.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Whether cancel() was called. Running out of budget does not count as cancelled.
+     */
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Whether the search should stop, because it was cancelled or its budget ran out.
+     */
+    public boolean isStopRequested() {
+        // Subtracting keeps the comparison right even if nanoTime() overflows.
+        if(mCancelled || (mHasDeadline && System.nanoTime() - mDeadline >= 0))
+            mStopRequested = true;
+        return mStopRequested;
+    }
+
+    /**
+     * Whether isStopRequested() has returned true, that is, whether a search checking this token
+     * was cut short by cancel() or by its budget rather than finishing on its own.
+     */
+    public boolean wasStopRequested() {
+        return mStopRequested;
+    }
+}
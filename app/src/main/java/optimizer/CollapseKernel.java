@@ -0,0 +1,272 @@
+package optimizer;
+
+/**
+ * Collapses DNA into a single equivalent resistance using only primitive scratch buffers. It can
+ * also hash the structure of the circuit a DNA builds, see structuralHash(...).
+ *
+ * A kernel is not thread safe, but it can be reused for any number of DNA. Each thread that
+ * evaluates fitness should own its own kernel so that no objects are allocated per evaluation.
+ */
+public class CollapseKernel {
+    /**
+     * Kind of a position that holds a single resistor, next to Resistor.SERIES and PARALLEL.
+     */
+    private static final int LEAF = -1;
+    /**
+     * Mixed into the hash of a group so series and parallel groups of the same members differ.
+     */
+    private static final long SERIES_SALT = 0x9e3779b97f4a7c15L;
+    private static final long PARALLEL_SALT = 0xc2b2ae3d27d4eb4fL;
+
+    /**
+     * Resistance of every available resistor, indexed the same way as the survivors.
+     */
+    private final double[] mAvailable;
+    /**
+     * Resistances of the selected resistors while they are being collapsed.
+     */
+    private double[] mResistances = new double[16];
+    /**
+     * Fenwick tree counting which positions in mResistances are still in the circuit. Finding the
+     * n-th remaining resistor is O(log k) instead of shifting an array on every removal.
+     */
+    private int[] mTree = new int[17];
+    /**
+     * While hashing, whether each position holds a single resistor (LEAF) or a group of resistors
+     * connected in series or in parallel.
+     */
+    private int[] mKinds = new int[16];
+    /**
+     * While hashing, the hash of each single resistor, or the sum of the hashes of the members of
+     * each group.
+     */
+    private long[] mHashes = new long[16];
+    /**
+     * Total resistance of the last collapsed DNA.
+     */
+    private double mTotalResistance;
+    /**
+     * Size of the last collapsed DNA.
+     */
+    private int mSize;
+
+    /**
+     * Constructor.
+     * @param availableResistors Available resistors the survivors refer to.
+     */
+    public CollapseKernel(Resistor[] availableResistors) {
+        mAvailable = new double[availableResistors.length];
+        for(int i = 0; i < availableResistors.length; i ++)
+            mAvailable[i] = availableResistors[i].getResistance();
+    }
+
+    /**
+     * Collapses the circuit described by the chromosomes. Results are read with
+     * getTotalResistance() and getSize().
+     * @param survivors Survivors.
+     * @param receivers Order receivers.
+     * @param givers Order givers.
+     * @param connections Order connections.
+     */
+    public void collapse(long[] survivors, int[] receivers, int[] givers, int[] connections) {
+        collapse(survivors, 0, survivors.length, receivers, givers, connections, 0, receivers.length);
+    }
+
+    /**
+     * Same as above, but the chromosomes can be stored at an offset inside larger arrays.
+     * @param survivors Survivors, packed 64 to a long.
+     * @param survivorsOffset Word where the survivors start.
+     * @param numWords Number of words of survivors.
+     * @param receivers Order receivers.
+     * @param givers Order givers.
+     * @param connections Order connections.
+     * @param orderOffset Start of the order.
+     * @param orderLength Length of the order.
+     */
+    public void collapse(long[] survivors, int survivorsOffset, int numWords,
+                         int[] receivers, int[] givers, int[] connections, int orderOffset, int orderLength) {
+        int numSelected = select(survivors, survivorsOffset, numWords, orderLength);
+        double[] resistances = mResistances;
+        int[] tree = mTree;
+        int highBit = Integer.highestOneBit(numSelected);
+
+        int orderEnd = orderOffset + orderLength;
+        for(int i = orderOffset; i < orderEnd; i ++) {
+            int r = position(receivers[i], numSelected, highBit);
+            int g = position(givers[i], numSelected, highBit);
+            int connection = connections[i];
+            if(connection == Resistor.SERIES) {
+                resistances[r] = Resistor.series(resistances[r], resistances[g]);
+            } else if (connection == Resistor.PARALLEL) {
+                resistances[r] = Resistor.parallel(resistances[r], resistances[g]);
+            } else {
+                throw new IllegalArgumentException("A connection can only be series or parallel.");
+            }
+            // Remove the giver.
+            for(int j = g + 1; j <= numSelected; j += j & -j)
+                --tree[j];
+        }
+
+        mTotalResistance = resistances[position(0, numSelected, highBit)];
+        // Every selected resistor ends up in the collapsed circuit.
+        mSize = numSelected;
+    }
+
+    /**
+     * Copies the resistances of the survivors into mResistances and marks every one of them as still
+     * in the circuit.
+     * @return Number of selected resistors.
+     */
+    private int select(long[] survivors, int survivorsOffset, int numWords, int orderLength) {
+        int numSelected = orderLength + 1;
+        ensureCapacity(numSelected);
+
+        double[] resistances = mResistances;
+        int selected = 0;
+        for(int w = 0; w < numWords; w ++) {
+            long word = survivors[survivorsOffset + w];
+            while(word != 0) {
+                if(selected == numSelected)
+                    throw new ArithmeticException("Number of survivors does not match the OrderChromosome.");
+                resistances[selected++] = mAvailable[(w << 6) + Long.numberOfTrailingZeros(word)];
+                // Clear the lowest set bit.
+                word &= word - 1;
+            }
+        }
+        if(selected != numSelected)
+            throw new ArithmeticException("Number of survivors does not match the OrderChromosome.");
+
+        // Every position starts in the circuit, so node i of the tree covers (i & -i) positions.
+        int[] tree = mTree;
+        for(int i = 1; i <= numSelected; i ++)
+            tree[i] = i & -i;
+        return numSelected;
+    }
+
+    /**
+     * Hash of the series-parallel circuit a DNA builds, the same for every DNA that builds the same
+     * circuit out of the same resistances. Groups are normalized before hashing: members of a group
+     * can be in any order (commutative), and a series group inside a series group, or a parallel
+     * group inside a parallel group, counts as part of it (associative). Resistors are hashed by
+     * their resistance, so DNA using different copies of a resistance or connecting the same
+     * resistors in a different order share a hash, while different circuits that happen to have the
+     * same total resistance and size do not.
+     *
+     * A group's hash is the sum of its members' hashes, so collapsing stays one pass over the order
+     * like collapse(...) and allocates nothing.
+     * @param dna DNA over the available resistors of this kernel.
+     * @return 64 bit hash.
+     */
+    public long structuralHash(DNA dna) {
+        long[] survivors = dna.getSurvivers();
+        int[] receivers = dna.getReceivers();
+        return structuralHash(survivors, 0, survivors.length, receivers, dna.getGivers(), dna.getConnections(),
+                0, receivers.length);
+    }
+
+    /**
+     * Same as above for chromosomes stored like in collapse(...).
+     */
+    public long structuralHash(long[] survivors, int survivorsOffset, int numWords,
+                               int[] receivers, int[] givers, int[] connections, int orderOffset, int orderLength) {
+        int numSelected = select(survivors, survivorsOffset, numWords, orderLength);
+        int[] tree = mTree;
+        int highBit = Integer.highestOneBit(numSelected);
+        int[] kinds = mKinds;
+        long[] hashes = mHashes;
+        for(int i = 0; i < numSelected; i ++) {
+            kinds[i] = LEAF;
+            hashes[i] = leafHash(mResistances[i]);
+        }
+
+        int orderEnd = orderOffset + orderLength;
+        for(int i = orderOffset; i < orderEnd; i ++) {
+            int r = position(receivers[i], numSelected, highBit);
+            int g = position(givers[i], numSelected, highBit);
+            int connection = connections[i];
+            if(connection != Resistor.SERIES && connection != Resistor.PARALLEL)
+                throw new IllegalArgumentException("A connection can only be series or parallel.");
+            hashes[r] = memberHash(r, connection) + memberHash(g, connection);
+            kinds[r] = connection;
+            // Remove the giver.
+            for(int j = g + 1; j <= numSelected; j += j & -j)
+                --tree[j];
+        }
+        return nodeHash(position(0, numSelected, highBit));
+    }
+
+    /*
+    What position pos adds to a group of kind connection: its members if it is a group of the same
+    kind, otherwise itself.
+     */
+    private long memberHash(int pos, int connection) {
+        return mKinds[pos] == connection ? mHashes[pos] : nodeHash(pos);
+    }
+
+    /*
+    Hash of whatever position pos holds.
+     */
+    private long nodeHash(int pos) {
+        int kind = mKinds[pos];
+        if(kind == LEAF)
+            return mHashes[pos];
+        return groupHash(mHashes[pos], kind);
+    }
+
+    /**
+     * Hash of a single resistor, shared with SubnetworkTable so both hash circuits alike.
+     */
+    static long leafHash(double resistance) {
+        return FitnessCache.mix(Double.doubleToLongBits(resistance));
+    }
+
+    /**
+     * Hash of a group given the sum of its members' hashes.
+     * @param sum Sum of the hashes of the members.
+     * @param connection Resistor.SERIES or Resistor.PARALLEL.
+     */
+    static long groupHash(long sum, int connection) {
+        return FitnessCache.mix(sum ^ (connection == Resistor.SERIES ? SERIES_SALT : PARALLEL_SALT));
+    }
+
+    /**
+     * Finds where the index-th resistor still in the circuit is stored.
+     * @param index Index within the remaining resistors.
+     * @param n Number of selected resistors.
+     * @param highBit Highest power of two not greater than n.
+     * @return Position in mResistances.
+     */
+    private int position(int index, int n, int highBit) {
+        int[] tree = mTree;
+        int pos = 0;
+        int remaining = index + 1;
+        for(int step = highBit; step > 0; step >>= 1) {
+            int next = pos + step;
+            if(next <= n && tree[next] < remaining) {
+                pos = next;
+                remaining -= tree[next];
+            }
+        }
+        if(pos >= n)
+            throw new ArithmeticException("Order refers to a resistor that is no longer in the circuit.");
+        return pos;
+    }
+
+    private void ensureCapacity(int size) {
+        if(mResistances.length < size) {
+            int capacity = Math.max(size, mResistances.length * 2);
+            mResistances = new double[capacity];
+            mTree = new int[capacity + 1];
+            mKinds = new int[capacity];
+            mHashes = new long[capacity];
+        }
+    }
+
+    public double getTotalResistance() {
+        return mTotalResistance;
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+}
@@ -32,12 +32,13 @@ public class DNA implements Comparable<DNA>{
      * @param upperPercentageOfSurvivors Upper percent of survivors to accept. This is important
      *                                   because the user is unlikely to want to use all the available resistors. This
      *                                   increases the speed of the algorithm by restricting the sample space.
+     * @param random Random stream.
      */
-    public DNA(int size, int upperPercentageOfSurvivors) {
+    public DNA(int size, int upperPercentageOfSurvivors, RandomStream random) {
         if(upperPercentageOfSurvivors <= 0 || upperPercentageOfSurvivors > 100)
             upperPercentageOfSurvivors = 20;
-        mPicker = new PickerChromosome(size, upperPercentageOfSurvivors);
-        mOrder = new OrderChromosome(mPicker.mSize);
+        mPicker = new PickerChromosome(size, upperPercentageOfSurvivors, random);
+        mOrder = new OrderChromosome(mPicker.mSize, random);
     }
 
     /**
@@ -59,10 +60,107 @@ public class DNA implements Comparable<DNA>{
      * @param connections Order connections.
      */
     public DNA(boolean[] survivors, int numSurvivors, int[] receivers, int[] givers, int[] connections) {
-        mPicker = new PickerChromosome(survivors, numSurvivors);
+        long[] bits = new long[numWords(survivors.length)];
+        for(int i = 0; i < survivors.length; i ++)
+            if(survivors[i])
+                bits[i >>> 6] |= 1L << i;
+        mPicker = new PickerChromosome(bits, survivors.length, numSurvivors);
         mOrder = new OrderChromosome(receivers, givers, connections);
     }
 
+    /**
+     * Constructor
+     * @param survivors Survivors packed 64 to a long. Bit i of word i / 64 is set if resistor i survives.
+     * @param numAvailable Number of available resistors.
+     * @param numSurvivors Number of survivors.
+     * @param receivers Order receivers.
+     * @param givers Order givers.
+     * @param connections Order connections.
+     */
+    public DNA(long[] survivors, int numAvailable, int numSurvivors, int[] receivers, int[] givers, int[] connections) {
+        mPicker = new PickerChromosome(survivors, numAvailable, numSurvivors);
+        mOrder = new OrderChromosome(receivers, givers, connections);
+    }
+
+    /**
+     * Copies the chromosomes and the last fitness results, so the copy can be handed to another
+     * thread while this DNA keeps being used.
+     * @return Copy of this DNA.
+     */
+    public DNA copy() {
+        DNA dna = new DNA(mPicker.mSurvivers.clone(), mPicker.mNumAvailable, mPicker.mSize,
+                mOrder.mReceivers.clone(), mOrder.mGivers.clone(), mOrder.mConnections.clone());
+        dna.mFitness = mFitness;
+        dna.mTotalResistance = mTotalResistance;
+        dna.mSize = mSize;
+        dna.mRank = mRank;
+        return dna;
+    }
+
+    /**
+     * Number of longs needed to store one survivor bit per available resistor.
+     * @param numAvailable Number of available resistors.
+     * @return Number of words.
+     */
+    public static int numWords(int numAvailable) {
+        return (numAvailable + 63) >>> 6;
+    }
+
+    /**
+     * Mask of the bits in the last word that belong to available resistors.
+     * @param numAvailable Number of available resistors.
+     * @return Mask of the valid bits.
+     */
+    static long lastWordMask(int numAvailable) {
+        int used = numAvailable & 63;
+        return used == 0 ? -1L : (1L << used) - 1;
+    }
+
+    /**
+     * Moves the survivors of every run of equal resistors to the start of the run, so DNA that
+     * only differ in which of several equal resistors they use become identical. The number of
+     * survivors and the circuit do not change.
+     * @param runs Runs from Inventory.findRuns(...).
+     */
+    public void canonicalizeSurvivors(int[] runs) {
+        canonicalizeRuns(mPicker.mSurvivers, 0, runs);
+    }
+
+    /**
+     * Same as above, but the survivors can be stored at an offset inside a larger array.
+     * @param survivors Survivors, packed 64 to a long.
+     * @param offset Word where the survivors start.
+     * @param runs Runs from Inventory.findRuns(...).
+     */
+    static void canonicalizeRuns(long[] survivors, int offset, int[] runs) {
+        for(int r = 0; r < runs.length; r += 2) {
+            int from = runs[r];
+            int to = runs[r + 1];
+            int firstWord = from >>> 6;
+            int lastWord = (to - 1) >>> 6;
+            int count = 0;
+            for(int w = firstWord; w <= lastWord; w ++) {
+                long mask = rangeMask(w, from, to);
+                count += Long.bitCount(survivors[offset + w] & mask);
+                survivors[offset + w] &= ~mask;
+            }
+            for(int w = firstWord; w <= lastWord; w ++)
+                survivors[offset + w] |= rangeMask(w, from, from + count);
+        }
+    }
+
+    /**
+     * Mask of the bits of word w that lie between [from, to).
+     */
+    private static long rangeMask(int w, int from, int to) {
+        int low = Math.max(from - (w << 6), 0);
+        int high = Math.min(to - (w << 6), 64);
+        if(high <= low)
+            return 0;
+        long mask = high == 64 ? -1L : (1L << high) - 1;
+        return mask & (-1L << low);
+    }
+
     @Override
     public int compareTo(DNA dna) {
         // Descending order.
@@ -102,38 +200,64 @@ public class DNA implements Comparable<DNA>{
         return mFitness;
     }
 
-    public boolean[] getSurvivers() {
+    /**
+     * Survivors packed 64 to a long. Bit i of word i / 64 is set if resistor i survives.
+     * @return Survivor words.
+     */
+    public long[] getSurvivers() {
         return mPicker.mSurvivers;
     }
 
+    public boolean isSurvivor(int i) {
+        return (mPicker.mSurvivers[i >>> 6] & (1L << i)) != 0;
+    }
+
+    public int getNumAvailable() {
+        return mPicker.mNumAvailable;
+    }
+
+    public int getNumSurvivors() {
+        return mPicker.mSize;
+    }
+
     public int[][] getOrder() {
         int[][] orders = {mOrder.mReceivers, mOrder.mGivers, mOrder.mConnections};
         return orders;
     }
 
+    public int[] getReceivers() {
+        return mOrder.mReceivers;
+    }
+
+    public int[] getGivers() {
+        return mOrder.mGivers;
+    }
+
+    public int[] getConnections() {
+        return mOrder.mConnections;
+    }
+
     /**
      * Crosses this DNA with partner.
-     * @param partner Partner to crossover with.
+     * @param partner Partner to cross with.
      * @param mutation Rate of mutations.
+     * @param random Random stream.
      * @return Child DNA.
      */
-    public DNA crossover(DNA partner, double mutation) {
-        mutation = mutation/100;
-        PickerChromosome pc = crossoverPicker(partner.mPicker, mutation);
-        OrderChromosome oc = crossoverOrder(partner.mOrder, pc.mSize, mutation);
-        return new DNA(pc, oc);
+    public DNA crossover(DNA partner, double mutation, RandomStream random) {
+        return crossover(partner, mutation, random, random);
     }
 
     /**
-     * Mutate the survivors.
-     * @param newSurvivors Survivors to mutate.
-     * @param index Index to mutate.
+     * Same as above, but the order chromosome is crossed with its own stream, like
+     * PackedPopulation.breedOrder(...) does.
+     * @param orderRandom Random stream for the order chromosome.
      */
-    private void mutateSurvivors(boolean[] newSurvivors, int index) {
-        if(Math.random() < .5)
-            newSurvivors[index] = true;
-        else
-            newSurvivors[index] = false;
+    DNA crossover(DNA partner, double mutation, RandomStream random, RandomStream orderRandom) {
+        mutation = mutation/100;
+        PickerChromosome pc = crossoverPicker(partner.mPicker, mutation, random);
+        OrderChromosome oc = crossoverOrder(partner.mOrder, pc.mSize, mutation, orderRandom);
+        return new DNA(pc, oc);
     }
 
     /**
@@ -143,74 +267,148 @@ public class DNA implements Comparable<DNA>{
      * @param connection Connection to mutate.
      * @param index index to mutate.
      * @param max Max index to select from,
+     * @param random Random stream.
      */
-    private void mutateOrder(int[] receiver, int[] giver, int[] connection, int index, int max) {
-        int[] orders = OrderChromosome.operands(max);
+    private static void mutateOrder(int[] receiver, int[] giver, int[] connection, int index, int max, RandomStream random) {
+        int[] orders = OrderChromosome.operands(max, random);
         receiver[index] = orders[0];
         giver[index] = orders[1];
-        connection[index] = OrderChromosome.randConnection();
+        connection[index] = OrderChromosome.randConnection(random);
     }
 
     /**
      * Crossover PickerChromosome.
      * @param partner Partner to cross with.
      * @param mutation Mutation rate.
+     * @param random Random stream.
      * @return New PickerChromosome.
      */
-    private PickerChromosome crossoverPicker(PickerChromosome partner, double mutation) {
-        boolean[] survivors = partner.mSurvivers;
-        int size = survivors.length, numSurvivors = 0;
-        boolean[] newSurvivors = new boolean[size]; // Size is the number of available resistors, which is the same for all DNA.
-        boolean[] thisGene = mPicker.mSurvivers;
-
-        double middle = (1+mutation)/2;
-
-        for (int i = 0; i < size; i++) {
-            double ran = Math.random();
-            if(ran <= mutation) {
-                // Mutate this index.
-                mutateSurvivors(newSurvivors, i);
-            } else if(ran < middle) {
-                // Choose this gene.
-                newSurvivors[i] = thisGene[i];
-            } else {
-                // Choose partner's gene.
-                newSurvivors[i] = survivors[i];
-            }
-            if(newSurvivors[i])
-                ++numSurvivors;
-        }
+    private PickerChromosome crossoverPicker(PickerChromosome partner, double mutation, RandomStream random) {
+        int size = partner.mNumAvailable; // Size is the number of available resistors, which is the same for all DNA.
+        long[] newSurvivors = new long[numWords(size)];
+        int numSurvivors = crossoverSurvivors(mPicker.mSurvivers, 0, partner.mSurvivers, 0,
+                newSurvivors, 0, size, mutation, random);
         if(numSurvivors == 0) {
             // Cannot return DNA with no survivors.
-            if(Math.random() < 0.5)
+            if(random.nextBoolean())
                 return mPicker;
             else
                 return partner;
         } else {
-            return new PickerChromosome(newSurvivors, numSurvivors);
+            return new PickerChromosome(newSurvivors, size, numSurvivors);
         }
     }
 
+    /**
+     * Crosses two survivor genes into newSurvivors 64 resistors at a time. Each bit comes from
+     * either parent with equal chance through a random mask, and each bit is mutated with
+     * probability mutation. Mutated bits are found by sampling the gap to the next mutation, so
+     * the cost is proportional to the number of words plus the number of mutations. The genes
+     * may be stored at an offset inside larger arrays so that packed populations can share this logic.
+     * @param thisGene Survivors of the first parent.
+     * @param thisOffset Word where the first parent's survivors start.
+     * @param partnerGene Survivors of the second parent.
+     * @param partnerOffset Word where the second parent's survivors start.
+     * @param newSurvivors Array to write the child's survivors to.
+     * @param newOffset Word where the child's survivors start.
+     * @param size Number of available resistors.
+     * @param mutation Mutation rate between [0, 1].
+     * @param random Random stream.
+     * @return Number of survivors in the child. Can be 0, which the caller must handle.
+     */
+    static int crossoverSurvivors(long[] thisGene, int thisOffset, long[] partnerGene, int partnerOffset,
+                                  long[] newSurvivors, int newOffset, int size, double mutation, RandomStream random) {
+        int words = numWords(size);
+        int numSurvivors = 0;
+        long nextMutation = nextMutationGap(mutation, random);
+
+        for(int w = 0; w < words; w ++) {
+            long mask = random.nextLong();
+            long child = (thisGene[thisOffset + w] & mask) | (partnerGene[partnerOffset + w] & ~mask);
+
+            long wordEnd = (long)(w + 1) << 6;
+            while(nextMutation < wordEnd) {
+                long bit = 1L << nextMutation;
+                if(random.nextBoolean())
+                    child |= bit;
+                else
+                    child &= ~bit;
+                nextMutation += 1 + nextMutationGap(mutation, random);
+            }
+            if(w == words - 1)
+                child &= lastWordMask(size);
+
+            newSurvivors[newOffset + w] = child;
+            numSurvivors += Long.bitCount(child);
+        }
+        return numSurvivors;
+    }
+
+    /**
+     * Samples how many bits are skipped before the next mutated bit.
+     * @param mutation Mutation rate between [0, 1].
+     * @param random Random stream.
+     * @return Number of bits without a mutation.
+     */
+    private static long nextMutationGap(double mutation, RandomStream random) {
+        if(mutation <= 0)
+            return Long.MAX_VALUE / 2;
+        if(mutation >= 1)
+            return 0;
+        return (long)(Math.log(1 - random.nextDouble()) / Math.log(1 - mutation));
+    }
+
     /**
      * Crossover OrderChromosome.
      * @param partner Partner to cross with.
      * @param numSurvivors Number of survivors from PickerChromosome.
      * @param mutation Mutate rate.
+     * @param random Random stream.
      * @return Return new OrderChromosome.
      */
-    private OrderChromosome crossoverOrder(OrderChromosome partner, int numSurvivors, double mutation) {
-        int[] partnerReceiver = partner.mReceivers, partnerGiver = partner.mGivers, partnerConnection = partner.mConnections;
-        int[] thisReceiver = mOrder.mReceivers, thisGiver = mOrder.mGivers, thisConnection = mOrder.mConnections;
+    private OrderChromosome crossoverOrder(OrderChromosome partner, int numSurvivors, double mutation, RandomStream random) {
         int[] newReceiver = new int[numSurvivors - 1], newGiver = new int[numSurvivors - 1], newConnection = new int[numSurvivors - 1];
+        crossoverOrders(mOrder.mReceivers, mOrder.mGivers, mOrder.mConnections, 0, mOrder.mReceivers.length,
+                partner.mReceivers, partner.mGivers, partner.mConnections, 0, partner.mReceivers.length,
+                newReceiver, newGiver, newConnection, 0, numSurvivors, mutation, random);
+        OrderChromosome oc = new OrderChromosome(newReceiver, newGiver, newConnection);
+        return oc;
+    }
 
-        int thisEndIndex = thisReceiver.length - 1;
-        int partnerEndIndex = partnerReceiver.length - 1;
-        int newEndIndex = newReceiver.length - 1;
+    /**
+     * Crosses two order genes into the new order arrays. Like crossoverSurvivors(...), every gene
+     * may be stored at an offset inside larger arrays.
+     * @param thisReceiver Receivers of the first parent.
+     * @param thisGiver Givers of the first parent.
+     * @param thisConnection Connections of the first parent.
+     * @param thisOffset Start of the first parent's order.
+     * @param thisLength Length of the first parent's order.
+     * @param partnerReceiver Receivers of the second parent.
+     * @param partnerGiver Givers of the second parent.
+     * @param partnerConnection Connections of the second parent.
+     * @param partnerOffset Start of the second parent's order.
+     * @param partnerLength Length of the second parent's order.
+     * @param newReceiver Receivers to write to.
+     * @param newGiver Givers to write to.
+     * @param newConnection Connections to write to.
+     * @param newOffset Start of the child's order.
+     * @param numSurvivors Number of survivors in the child. The child's order has numSurvivors - 1 entries.
+     * @param mutation Mutation rate between [0, 1].
+     * @param random Random stream.
+     */
+    static void crossoverOrders(int[] thisReceiver, int[] thisGiver, int[] thisConnection, int thisOffset, int thisLength,
+                                int[] partnerReceiver, int[] partnerGiver, int[] partnerConnection, int partnerOffset, int partnerLength,
+                                int[] newReceiver, int[] newGiver, int[] newConnection, int newOffset, int numSurvivors,
+                                double mutation, RandomStream random) {
+        int thisEndIndex = thisLength - 1;
+        int partnerEndIndex = partnerLength - 1;
+        int newEndIndex = numSurvivors - 2;
 
         double middle = (1+mutation)/2;
 
         while(thisEndIndex >= 0 && partnerEndIndex >= 0 && newEndIndex >= 0) {
-            double ran = Math.random();
+            int newI = newOffset + newEndIndex;
+            double ran = random.nextDouble();
             if(ran <= mutation) {
                 // Mutate this index.
                 /*
@@ -219,17 +417,19 @@ public class DNA implements Comparable<DNA>{
                 the max index is between [0, 2]; etc.. This equation calculates the max index a certain position can have.
                 The right-most position would then have a max index of 1 for example.
                  */
-                mutateOrder(newReceiver, newGiver, newConnection, newEndIndex, numSurvivors - 1 - newEndIndex);
+                mutateOrder(newReceiver, newGiver, newConnection, newI, numSurvivors - 1 - newEndIndex, random);
             } else if(ran < middle) {
                 // Choose this gene.
-                newReceiver[newEndIndex] = thisReceiver[thisEndIndex];
-                newGiver[newEndIndex] = thisGiver[thisEndIndex];
-                newConnection[newEndIndex] = thisConnection[thisEndIndex];
+                int thisI = thisOffset + thisEndIndex;
+                newReceiver[newI] = thisReceiver[thisI];
+                newGiver[newI] = thisGiver[thisI];
+                newConnection[newI] = thisConnection[thisI];
             } else {
                 // Choose partner's gene.
-                newReceiver[newEndIndex] = partnerReceiver[partnerEndIndex];
-                newGiver[newEndIndex] = partnerGiver[partnerEndIndex];
-                newConnection[newEndIndex] = partnerConnection[partnerEndIndex];
+                int partnerI = partnerOffset + partnerEndIndex;
+                newReceiver[newI] = partnerReceiver[partnerI];
+                newGiver[newI] = partnerGiver[partnerI];
+                newConnection[newI] = partnerConnection[partnerI];
             }
             --thisEndIndex;
             --partnerEndIndex;
@@ -237,30 +437,29 @@ public class DNA implements Comparable<DNA>{
         }
 
         // Some survivors in the new OrderChromosome need instructions.
-        if(newEndIndex >= 0) {
-            while(newEndIndex >= 0) {
-                if (thisEndIndex >= 0) {
-                    newReceiver[newEndIndex] = thisReceiver[thisEndIndex];
-                    newGiver[newEndIndex] = thisGiver[thisEndIndex];
-                    newConnection[newEndIndex] = thisConnection[thisEndIndex];
-                    --thisEndIndex;
-                } else if(partnerEndIndex >= 0) {
-                    newReceiver[newEndIndex] = partnerReceiver[partnerEndIndex];
-                    newGiver[newEndIndex] = partnerGiver[partnerEndIndex];
-                    newConnection[newEndIndex] = partnerConnection[partnerEndIndex];
-                    --partnerEndIndex;
-                } else {
-                    // Must randomly generate them.
-                    int[] operands = OrderChromosome.operands(numSurvivors - 1 - newEndIndex);
-                    newReceiver[newEndIndex] = operands[0];
-                    newGiver[newEndIndex] = operands[1];
-                    newConnection[newEndIndex] = OrderChromosome.randConnection();
-                }
-                --newEndIndex;
+        while(newEndIndex >= 0) {
+            int newI = newOffset + newEndIndex;
+            if (thisEndIndex >= 0) {
+                int thisI = thisOffset + thisEndIndex;
+                newReceiver[newI] = thisReceiver[thisI];
+                newGiver[newI] = thisGiver[thisI];
+                newConnection[newI] = thisConnection[thisI];
+                --thisEndIndex;
+            } else if(partnerEndIndex >= 0) {
+                int partnerI = partnerOffset + partnerEndIndex;
+                newReceiver[newI] = partnerReceiver[partnerI];
+                newGiver[newI] = partnerGiver[partnerI];
+                newConnection[newI] = partnerConnection[partnerI];
+                --partnerEndIndex;
+            } else {
+                // Must randomly generate them.
+                int[] operands = OrderChromosome.operands(numSurvivors - 1 - newEndIndex, random);
+                newReceiver[newI] = operands[0];
+                newGiver[newI] = operands[1];
+                newConnection[newI] = OrderChromosome.randConnection(random);
             }
+            --newEndIndex;
         }
-        OrderChromosome oc = new OrderChromosome(newReceiver, newGiver, newConnection);
-        return oc;
     }
 
     /**
@@ -272,29 +471,31 @@ public class DNA implements Comparable<DNA>{
          */
         private int mSize = 0;
         /**
-         * Describes which resistors to select.
+         * Number of available resistors.
+         */
+        private final int mNumAvailable;
+        /**
+         * Describes which resistors to select, packed 64 to a long.
          */
-        private boolean[] mSurvivers;
-        public PickerChromosome(int totalSize, int upperPercentage) {
+        private long[] mSurvivers;
+        public PickerChromosome(int totalSize, int upperPercentage, RandomStream random) {
             // Chance of surviving.
-            double mKeep = (int)(Math.random()*(upperPercentage + 1)); // Uniformly random [0, 1). Can change if desired
-            mSurvivers = new boolean[totalSize];
+            double mKeep = random.nextInt(upperPercentage + 1); // Uniformly random [0, 1). Can change if desired
+            mNumAvailable = totalSize;
+            mSurvivers = new long[numWords(totalSize)];
             if(totalSize == 1) {
                 // Must have at least one survivor.
-                mSurvivers[0] = true;
+                mSurvivers[0] = 1L;
                 ++mSize;
                 return;
             }
             while(mSize == 0) {
                 for (int i = 0; i < totalSize; i++) {
-                    int ran = (int) (Math.random() * 101);
+                    int ran = random.nextInt(101);
                     if (ran <= mKeep) {
                         // Resistor survives.
-                        mSurvivers[i] = true;
+                        mSurvivers[i >>> 6] |= 1L << i;
                         ++mSize;
-                    } else {
-                        // Resistor dies.
-                        mSurvivers[i] = false;
                     }
                 }
                 // Ensures we do not get stuck in a long loop.
@@ -305,10 +506,12 @@ public class DNA implements Comparable<DNA>{
         /**
          * Constructor
          * @param survivors Describes survivors.
+         * @param numAvailable Number of available resistors.
          * @param size Number of survivors.
          */
-        public PickerChromosome(boolean[] survivors, int size) {
+        public PickerChromosome(long[] survivors, int numAvailable, int size) {
             mSurvivers = survivors;
+            mNumAvailable = numAvailable;
             mSize = size;
         }
     }
@@ -333,8 +536,9 @@ public class DNA implements Comparable<DNA>{
         /**
          * Randomly create structure.
          * @param numSurvivors Number of survivors.
+         * @param random Random stream.
          */
-        public OrderChromosome(int numSurvivors) {
+        public OrderChromosome(int numSurvivors, RandomStream random) {
             /*
             What happens when size = 1? Evolution code (specifically the collapseResistor(...) method)
             should work fine.
@@ -348,10 +552,10 @@ public class DNA implements Comparable<DNA>{
             int max = validSize;
             // mGiver[0] will combine with mReceiver[0] etc.
             for(int i = 0; i < validSize; i ++) {
-                int[] operands = operands(max);
+                int[] operands = operands(max, random);
                 mReceivers[i] = operands[0];
                 mGivers[i] = operands[1];
-                mConnections[i] = randConnection();
+                mConnections[i] = randConnection(random);
                 --max;
             }
         }
@@ -371,14 +575,15 @@ public class DNA implements Comparable<DNA>{
         /**
          * Generate random receiver and giver value.
          * @param max
+         * @param random Random stream.
          * @return
          */
-        private static int[] operands(int max) {
+        private static int[] operands(int max, RandomStream random) {
             if (max <= 0)
                 throw new IllegalArgumentException("Max cannot be less than or equal to 0.");
-            int operand1 = (int)(Math.random()*(max + 1));
+            int operand1 = random.nextInt(max + 1);
             // Cannot choose the same index twice.
-            int operand2 = (int)(Math.random()*max);
+            int operand2 = random.nextInt(max);
             // To account for the removal of operand1 and left shift.
             if (operand2 >= operand1)
                 ++operand2;
@@ -387,10 +592,11 @@ public class DNA implements Comparable<DNA>{
 
         /**
          * Generate random connection.
+         * @param random Random stream.
          * @return
          */
-        private static int randConnection() {
-            return Math.random() < 0.5 ? Resistor.SERIES : Resistor.PARALLEL;
+        private static int randConnection(RandomStream random) {
+            return random.nextBoolean() ? Resistor.SERIES : Resistor.PARALLEL;
         }
     }
 }
@@ -1,9 +1,47 @@
 package optimizer;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class EvolveOptimalResistors {
+    /**
+     * Default number of threads used to evaluate fitness and breed children.
+     */
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    /**
+     * Population of the constructor that picks its own parameters.
+     */
+    public static final int DEFAULT_POP_SIZE = 3000;
+    /**
+     * Populations smaller than this are not worth splitting across threads.
+     */
+    private static final int MIN_PARALLEL_POP = 256;
+    /**
+     * Most genomes remembered by one fitness cache.
+     */
+    private static final int MAX_CACHE_CAPACITY = 1 << 15;
+    /**
+     * Default number of most fit individuals copied unchanged into the next generation.
+     */
+    public static final int DEFAULT_NUM_ELITES = 2;
+    /**
+     * Most fit circuits refined by local search once evolve() is done, see setLocalSearch(...).
+     */
+    public static final int DEFAULT_NUM_REFINED = 10;
+    /**
+     * Most circuits kept in the hall of fame, unless more are published to a ProgressListener.
+     */
+    private static final int HALL_OF_FAME_SIZE = 32;
+
     private final Resistor[] mAvailableResistors;
+    /**
+     * Runs of equal available resistors. Survivors are kept at the start of every run.
+     */
+    private final int[] mRuns;
     private int mSizePriority;
     private int mAccuracyPriority;
     private DNA[] mPop;
@@ -11,6 +49,91 @@ public class EvolveOptimalResistors {
     private double mDesiredResistance;
     private double mTotalFitness;
     private int mNumGenerations;
+    private final int mParallelism;
+    private ExecutorService mExecutor;
+    /**
+     * One reusable kernel per fitness chunk so evaluation does not allocate.
+     */
+    private final CollapseKernel[] mKernels;
+    /**
+     * One fitness cache per fitness chunk, used alongside mKernels. Null when caching is off.
+     */
+    private FitnessCache[] mCaches;
+    /**
+     * Random stream for everything done on the calling thread. Children draw from streams restarted
+     * from values drawn from it.
+     */
+    private final RandomStream mRandom;
+    /**
+     * Chooses the parents of every child.
+     */
+    private ParentSelector mSelector = ParentSelector.create(ParentSelector.ROULETTE);
+    /**
+     * When true, evolve() keeps the population in two PackedPopulation buffers instead of DNA Objects.
+     */
+    private boolean mPacked;
+    /**
+     * Generation being evaluated, and the buffer the next generation is bred into, when packed.
+     */
+    private PackedPopulation mFront;
+    private PackedPopulation mBack;
+    /**
+     * Told whenever the most fit circuits evaluated so far improve, if set.
+     */
+    private ProgressListener mListener;
+    private int mNumProgress;
+    /**
+     * Most fit unique circuits of every generation evaluated so far, so circuits lost by later
+     * generations are still returned.
+     */
+    private HallOfFame mHallOfFame;
+    /**
+     * Hall of fame shared with other evolvers, used instead of a new one by evolve() when set.
+     */
+    private HallOfFame mSharedHallOfFame;
+    /**
+     * Most fit individuals copied unchanged into the next generation.
+     */
+    private int mNumElites = DEFAULT_NUM_ELITES;
+    /**
+     * Most fit circuits of the hall of fame refined by local search after the last generation.
+     */
+    private int mNumRefined = DEFAULT_NUM_REFINED;
+    /**
+     * Stops evolve() early when set. See CancellationToken.
+     */
+    private CancellationToken mToken;
+    /**
+     * Last evaluated generation, kept in case the generation after it is interrupted. The packed
+     * mode keeps it in mBack instead.
+     */
+    private DNA[] mParents;
+    /**
+     * Decides when evolve() stops early, and why it last stopped.
+     */
+    private StoppingPolicy mStoppingPolicy = StoppingPolicy.createDefault();
+    private int mStopReason = StoppingPolicy.CONTINUE;
+    /**
+     * Called after every generation is evaluated, if set.
+     */
+    private GenerationHook mHook;
+    /**
+     * Whether evolve() prints its progress.
+     */
+    private boolean mVerbose = true;
+
+    /**
+     * Looks at, and may change, every generation once it is evaluated and before evolve() decides
+     * whether to stop. Used by IslandOptimizer to move DNA between populations.
+     */
+    interface GenerationHook {
+        /**
+         * @param evolver Evolver running the generation.
+         * @param generation Number of generations bred before this one.
+         * @param allFitness Fitness of every individual. Must be kept up to date by the hook.
+         */
+        void onEvaluated(EvolveOptimalResistors evolver, int generation, double[] allFitness);
+    }
 
     /*
     Higher sizePriority means more priority towards size so equivalent resistors will tend to be smaller.
@@ -18,17 +141,43 @@ public class EvolveOptimalResistors {
      */
     public EvolveOptimalResistors(Resistor[] availableResistors, double desiredResistance, int sizePriority,
                                   int popSize, int mutationRate, int numGen, DNA[] initial) {
+        this(availableResistors, desiredResistance, sizePriority, popSize, mutationRate, numGen, DEFAULT_PARALLELISM, initial);
+    }
+
+    /*
+    Same as above, but parallelism sets the number of threads used to evaluate fitness and breed
+    children. A parallelism of 1 does all the work on the calling thread.
+     */
+    public EvolveOptimalResistors(Resistor[] availableResistors, double desiredResistance, int sizePriority,
+                                  int popSize, int mutationRate, int numGen, int parallelism, DNA[] initial) {
+        this(availableResistors, desiredResistance, sizePriority, popSize, mutationRate, numGen, parallelism,
+                new RandomStream(), initial);
+    }
+
+    /*
+    Same as above, but every random decision is drawn from random. Two runs with equally seeded
+    streams, equal arguments and equal initial DNA produce the same result, even with different
+    parallelism.
+     */
+    public EvolveOptimalResistors(Resistor[] availableResistors, double desiredResistance, int sizePriority,
+                                  int popSize, int mutationRate, int numGen, int parallelism, RandomStream random,
+                                  DNA[] initial) {
         check0_100(sizePriority);
         check0_100(mutationRate);
         if(popSize < 1)
             throw new IllegalArgumentException("Population must be a positive number");
+        if(initial.length > popSize)
+            throw new IllegalArgumentException("There must not be more initial DNA than the population.");
         if(desiredResistance <= 0)
             throw new IllegalArgumentException("Desired resistance must be a positive number.");
         if(numGen < 0)
             throw new IllegalArgumentException("Number of generations must be >= 0.");
+        if(parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be a positive number.");
 
 
         mAvailableResistors = availableResistors;
+        mHallOfFame = new HallOfFame(HALL_OF_FAME_SIZE, availableResistors);
         int numAvailable = availableResistors.length;
 
         if(numAvailable < 1)
@@ -36,16 +185,23 @@ public class EvolveOptimalResistors {
 
         mSizePriority = sizePriority;
         mAccuracyPriority = 100 - sizePriority;
+        mRandom = random;
 
+        mRuns = Inventory.findRuns(availableResistors);
         mPop = new DNA[popSize];
         System.arraycopy( initial, 0, mPop, 0, initial.length );
         for(int i = initial.length; i < popSize; i ++)
-            mPop[i] = new DNA(numAvailable, 100 - sizePriority);
+            mPop[i] = new DNA(numAvailable, 100 - sizePriority, mRandom);
+        for(DNA one : mPop)
+            one.canonicalizeSurvivors(mRuns);
 
 
         mMutationRate = mutationRate;
         mDesiredResistance = desiredResistance;
         mNumGenerations = numGen;
+        mParallelism = parallelism;
+        mKernels = createKernels(availableResistors, parallelism);
+        mCaches = createCaches(popSize, parallelism);
     }
 
     /*
@@ -53,6 +209,7 @@ public class EvolveOptimalResistors {
      */
     public EvolveOptimalResistors(Resistor[] availableResistors, double desiredResistance,  DNA[] initial) {
         mAvailableResistors = availableResistors;
+        mHallOfFame = new HallOfFame(HALL_OF_FAME_SIZE, availableResistors);
         int numAvailable = mAvailableResistors.length;
 
         if(numAvailable < 1)
@@ -62,16 +219,196 @@ public class EvolveOptimalResistors {
 
         mSizePriority = 50;
         mAccuracyPriority = 100 - mSizePriority;
+        mRandom = new RandomStream();
 
-        int popSize = 3000;
+        int popSize = DEFAULT_POP_SIZE;
+        if(initial.length > popSize)
+            throw new IllegalArgumentException("There must not be more initial DNA than the population.");
+        mRuns = Inventory.findRuns(availableResistors);
         mPop = new DNA[popSize];
         System.arraycopy( initial, 0, mPop, 0, initial.length );
         for(int i = initial.length; i < popSize; i ++)
-            mPop[i] = new DNA(numAvailable, 100 - mSizePriority);
+            mPop[i] = new DNA(numAvailable, 100 - mSizePriority, mRandom);
+        for(DNA one : mPop)
+            one.canonicalizeSurvivors(mRuns);
 
         mMutationRate = 4.5;
         mDesiredResistance = desiredResistance;
         mNumGenerations = 50;
+        mParallelism = DEFAULT_PARALLELISM;
+        mKernels = createKernels(availableResistors, mParallelism);
+        mCaches = createCaches(popSize, mParallelism);
+    }
+
+    private static CollapseKernel[] createKernels(Resistor[] availableResistors, int parallelism) {
+        CollapseKernel[] kernels = new CollapseKernel[parallelism];
+        for(int i = 0; i < parallelism; i ++)
+            kernels[i] = new CollapseKernel(availableResistors);
+        return kernels;
+    }
+
+    /*
+    Sized so every cache can hold about two generations of its chunk.
+     */
+    private static FitnessCache[] createCaches(int popSize, int parallelism) {
+        int capacity = (int)Math.min(MAX_CACHE_CAPACITY, 2L * popSize / parallelism + 1);
+        FitnessCache[] caches = new FitnessCache[parallelism];
+        for(int i = 0; i < parallelism; i ++)
+            caches[i] = new FitnessCache(capacity);
+        return caches;
+    }
+
+    /**
+     * Chooses whether fitness evaluation remembers the results of recent genomes, so identical
+     * children are not collapsed again. On by default; results are the same either way.
+     * @param enabled True to use the cache.
+     */
+    public void setFitnessCache(boolean enabled) {
+        if(!enabled)
+            mCaches = null;
+        else if(mCaches == null)
+            mCaches = createCaches(mPop.length, mParallelism);
+    }
+
+    /**
+     * Number of fitness evaluations answered by the fitness cache so far.
+     */
+    public long getCacheHits() {
+        long hits = 0;
+        if(mCaches != null)
+            for(FitnessCache cache : mCaches)
+                hits += cache.getHits();
+        return hits;
+    }
+
+    /**
+     * Number of fitness evaluations that had to collapse their circuit while the cache was on.
+     */
+    public long getCacheMisses() {
+        long misses = 0;
+        if(mCaches != null)
+            for(FitnessCache cache : mCaches)
+                misses += cache.getMisses();
+        return misses;
+    }
+
+    /**
+     * Chooses whether evolve() stores the population as DNA Objects or packed into primitive
+     * arrays. The packed mode allocates almost nothing per generation, which matters for large
+     * populations. Both modes produce DNA Objects once evolve() returns.
+     * @param packed True to use the packed population.
+     */
+    public void setPackedPopulation(boolean packed) {
+        mPacked = packed;
+    }
+
+    /**
+     * Chooses how parents are selected from each generation.
+     * @param strategy ParentSelector.ROULETTE (default), ParentSelector.ALIAS or
+     *                 ParentSelector.STOCHASTIC_UNIVERSAL.
+     */
+    public void setSelectionStrategy(int strategy) {
+        mSelector = ParentSelector.create(strategy);
+    }
+
+    /**
+     * Publishes the most fit circuits found so far after every generation that improves them, so
+     * good circuits can be shown before evolve() returns. The population itself is not reordered.
+     * @param listener Listener called on the thread running evolve(), or null for none.
+     * @param numTop Number of circuits published.
+     */
+    public void setProgressListener(ProgressListener listener, int numTop) {
+        mListener = listener;
+        mNumProgress = numTop;
+    }
+
+    /**
+     * Chooses how many of the most fit individuals of every generation are copied unchanged into
+     * the next one, so the most fit circuit is never lost.
+     * @param numElites Number of elites, at least 0. DEFAULT_NUM_ELITES by default.
+     */
+    public void setElitism(int numElites) {
+        if(numElites < 0)
+            throw new IllegalArgumentException("Number of elites must be >= 0.");
+        mNumElites = numElites;
+    }
+
+    /**
+     * Chooses how many of the most fit circuits are refined by local search once the last
+     * generation is evaluated. Local search tries swapping single resistors for the closest unused
+     * resistances, flipping connections and dropping resistors, and keeps every change that
+     * improves fitness. Refined circuits join the hall of fame.
+     * @param numRefined Number of circuits, at least 0. DEFAULT_NUM_REFINED by default.
+     */
+    public void setLocalSearch(int numRefined) {
+        if(numRefined < 0)
+            throw new IllegalArgumentException("Number of refined circuits must be >= 0.");
+        mNumRefined = numRefined;
+    }
+
+    /**
+     * Most fit unique circuits of every generation evaluated by the last call to evolve().
+     */
+    public HallOfFame getHallOfFame() {
+        return mHallOfFame;
+    }
+
+    /**
+     * Lets evolve() stop before numGen generations. When the token fires, evolve() returns with the
+     * last generation it fully evaluated.
+     * @param token Token, or null to always run every generation.
+     */
+    public void setCancellationToken(CancellationToken token) {
+        mToken = token;
+    }
+
+    /**
+     * Chooses when evolve() stops before numGen generations.
+     * @param policy Policy, for example StoppingPolicy.createDefault() (default).
+     */
+    public void setStoppingPolicy(StoppingPolicy policy) {
+        if(policy == null)
+            throw new IllegalArgumentException("Stopping policy must not be null.");
+        mStoppingPolicy = policy;
+    }
+
+    /**
+     * Why the last call to evolve() stopped, one of the reasons in StoppingPolicy.
+     */
+    public int getStopReason() {
+        return mStopReason;
+    }
+
+    /**
+     * Chooses whether evolve() prints its progress, true by default. Searches running side by side
+     * turn it off so their output does not interleave.
+     */
+    public void setVerbose(boolean verbose) {
+        mVerbose = verbose;
+    }
+
+    void setGenerationHook(GenerationHook hook) {
+        mHook = hook;
+    }
+
+    /**
+     * Makes evolve() offer its circuits to hallOfFame instead of a hall of fame of its own, so
+     * several evolvers running at once can share one. Used by IslandOptimizer.
+     */
+    void setHallOfFame(HallOfFame hallOfFame) {
+        mSharedHallOfFame = hallOfFame;
+    }
+
+    public double getDesiredResistance() {
+        return mDesiredResistance;
+    }
+
+    public Resistor[] getAvailableResistors() {
+        return mAvailableResistors;
+    }
+
+    private boolean isStopRequested() {
+        return mToken != null && mToken.isStopRequested();
     }
 
     private void check0_100(int val) {
@@ -80,123 +417,476 @@ public class EvolveOptimalResistors {
     }
 
     public void evolve() {
-        // Aggressive early stopping to since speed is very important.
-        double prevTotalFitness = 0;
-        boolean earlyStoppingTiggered = false;
-        for(int i = 0; i < mNumGenerations; i ++) {
-            mTotalFitness = 0;
-            double[] allFitness = computeAllFitness();
-            if(mTotalFitness < prevTotalFitness) {
-                System.out.println("Early stopping triggered.");
-                earlyStoppingTiggered = true;
+        if(mPacked) {
+            int numAvailable = mAvailableResistors.length;
+            mFront = new PackedPopulation(mPop.length, numAvailable, mRuns);
+            mFront.fill(mPop);
+            mBack = new PackedPopulation(mPop.length, numAvailable, mRuns);
+        }
+        mHallOfFame = mSharedHallOfFame != null ? mSharedHallOfFame
+                : new HallOfFame(Math.max(HALL_OF_FAME_SIZE, mNumProgress), mAvailableResistors);
+        mStoppingPolicy.reset();
+        mStopReason = StoppingPolicy.MAX_GENERATIONS;
+        try {
+            boolean bred = false;
+            int lastGeneration = 0;
+            for(int i = 0; i < mNumGenerations; i ++) {
+                mTotalFitness = 0;
+                // The first generation has nothing to fall back on, so it is always evaluated in full.
+                double[] allFitness = computeAllFitness(bred);
+                if(allFitness == null) {
+                    mStopReason = StoppingPolicy.STOP_REQUESTED;
+                    break;
+                }
+                updateHallOfFame(i, allFitness);
+                lastGeneration = i;
+                if(mHook != null)
+                    mHook.onEvaluated(this, i, allFitness);
+                mStopReason = isStopRequested() ? StoppingPolicy.STOP_REQUESTED
+                        : mStoppingPolicy.check(summarize(i, allFitness));
+                if(mStopReason != StoppingPolicy.CONTINUE)
+                    break;
+                mStopReason = StoppingPolicy.MAX_GENERATIONS;
+                if(mPacked) {
+                    packedChildren(allFitness);
+                } else {
+                    mParents = mPop;
+                    mPop = children(allFitness);
+                }
+                bred = true;
+                if(mVerbose) {
+                    String log = String.format("Ending Generation %d, AVG FITNESS: %.5f", i+1, mTotalFitness);
+                    System.out.println(log);
+                }
+            }
+            if(mStopReason == StoppingPolicy.MAX_GENERATIONS) {
+                // Update the fitness for last generation of DNA.
+                double[] allFitness = computeAllFitness(bred);
+                if(allFitness != null) {
+                    updateHallOfFame(mNumGenerations, allFitness);
+                    lastGeneration = mNumGenerations;
+                } else {
+                    mStopReason = StoppingPolicy.STOP_REQUESTED;
+                }
+            }
+            refineMostFit(lastGeneration);
+            if(mVerbose)
+                System.out.println("Stopped: " + StoppingPolicy.reasonName(mStopReason) + ".");
+            long lookups = getCacheHits() + getCacheMisses();
+            if(mVerbose && lookups > 0)
+                System.out.println(String.format("Fitness cache hit rate: %.1f%%", 100.0 * getCacheHits() / lookups));
+            if(mPacked)
+                mPop = mFront.toDNA();
+        } finally {
+            shutdownExecutor();
+            mFront = null;
+            mBack = null;
+            mParents = null;
+        }
+    }
+
+    /*
+    Finds the most fit individual of the generation that was just evaluated.
+     */
+    private StoppingPolicy.Generation summarize(int index, double[] allFitness) {
+        int best = 0;
+        for(int i = 1; i < allFitness.length; i ++)
+            if(allFitness[i] > allFitness[best])
+                best = i;
+        double totalResistance = mPacked ? mFront.getTotalResistance(best) : mPop[best].getTotalResistance();
+        int size = mPacked ? mFront.getSize(best) : mPop[best].getSize();
+        return new StoppingPolicy.Generation(this, index, mTotalFitness, allFitness[best], totalResistance, size);
+    }
+
+    /*
+    Indices of the num most fit individuals, most fit first. Only meant for small num.
+     */
+    int[] mostFitIndices(double[] allFitness, int num) {
+        num = Math.min(num, allFitness.length);
+        int[] indices = new int[num];
+        if(num == 0)
+            return indices;
+        int found = 0;
+        for(int i = 0; i < allFitness.length; i ++) {
+            if(found == num && allFitness[i] <= allFitness[indices[num - 1]])
+                continue;
+            int j = found == num ? num - 1 : found++;
+            while(j > 0 && allFitness[indices[j - 1]] < allFitness[i]) {
+                indices[j] = indices[j - 1];
+                j --;
+            }
+            indices[j] = i;
+        }
+        return indices;
+    }
+
+    /*
+    Copy of an evaluated individual that stays valid after the population moves on.
+     */
+    DNA getIndividual(int i) {
+        return mPacked ? mFront.toDNA(i) : mPop[i].copy();
+    }
+
+    /*
+    Replaces the least fit individuals of the evaluated population with evaluated DNA from
+    elsewhere, keeping allFitness and the total fitness in step. Only supported without the packed
+    population.
+     */
+    void replaceLeastFit(DNA[] immigrants, double[] allFitness) {
+        if(mPacked)
+            throw new IllegalArgumentException("Immigrants can not be added to a packed population.");
+        int num = Math.min(immigrants.length, allFitness.length);
+        // The least fit are the most fit of the negated fitness.
+        double[] negated = new double[allFitness.length];
+        for(int i = 0; i < negated.length; i ++)
+            negated[i] = -allFitness[i];
+        int[] leastFit = mostFitIndices(negated, num);
+        for(int i = 0; i < num; i ++) {
+            int index = leastFit[i];
+            DNA immigrant = immigrants[i];
+            mTotalFitness += immigrant.getFitness() - allFitness[index];
+            allFitness[index] = immigrant.getFitness();
+            mPop[index] = immigrant;
+        }
+    }
+
+    /*
+    Fraction of the evaluated population with a distinct total resistance and size. Only called by
+    stopping policies that need it.
+     */
+    double diversity() {
+        int numPop = mPacked ? mFront.size() : mPop.length;
+        long[] keys = new long[numPop];
+        for(int i = 0; i < numPop; i ++) {
+            double totalResistance = mPacked ? mFront.getTotalResistance(i) : mPop[i].getTotalResistance();
+            int size = mPacked ? mFront.getSize(i) : mPop[i].getSize();
+            // Sizes are small, so mixing them into the low bits rarely merges distinct circuits.
+            keys[i] = Double.doubleToLongBits(totalResistance) * 31 + size;
+        }
+        Arrays.sort(keys);
+        int numDistinct = numPop == 0 ? 0 : 1;
+        for(int i = 1; i < numPop; i ++)
+            if(keys[i] != keys[i - 1])
+                numDistinct ++;
+        return numPop == 0 ? 1 : (double) numDistinct / numPop;
+    }
+
+    /*
+    Offers the generation that was just evaluated to the hall of fame, and tells the listener if the
+    circuits it publishes changed. The cut-off is read once, so this costs one pass over allFitness
+    on most generations. The individuals beating it are offered most fit first, in batches as large
+    as the hall of fame, so islands sharing it take its lock a few times per generation rather than
+    once per individual. Once a batch raises the cut-off above the next individual, none of the rest
+    can get in.
+     */
+    private void updateHallOfFame(int generation, final double[] allFitness) {
+        double threshold = mHallOfFame.threshold();
+        int numBeaters = 0;
+        for(double fitness : allFitness)
+            if(fitness > threshold)
+                numBeaters ++;
+        if(numBeaters == 0)
+            return;
+        Integer[] beaters = new Integer[numBeaters];
+        numBeaters = 0;
+        for(int i = 0; i < allFitness.length; i ++)
+            if(allFitness[i] > threshold)
+                beaters[numBeaters ++] = i;
+        // The sort is stable, so equally fit individuals are offered in population order.
+        Arrays.sort(beaters, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(allFitness[b], allFitness[a]);
+            }
+        });
+        int batchSize = mHallOfFame.getCapacity();
+        DNA[] batch = new DNA[Math.min(batchSize, numBeaters)];
+        int best = -1;
+        for(int from = 0; from < numBeaters; from += batchSize) {
+            if(from > 0 && allFitness[beaters[from]] <= mHallOfFame.threshold())
                 break;
+            int count = Math.min(batchSize, numBeaters - from);
+            // Packed individuals are overwritten by the next generation, so they are copied out.
+            for(int k = 0; k < count; k ++)
+                batch[k] = mPacked ? mFront.toDNA(beaters[from + k]) : mPop[beaters[from + k]];
+            int position = mHallOfFame.offerAll(batch, count);
+            if(position >= 0 && (best < 0 || position < best))
+                best = position;
+        }
+        if(best >= 0 && best < mNumProgress)
+            publishProgress(generation);
+    }
+
+    /*
+    Runs local search on the most fit circuits of the hall of fame and offers what it improves back.
+    Each circuit takes a few hundred fitness evaluations at most, so this is cheap next to a
+    generation, but it still gives up as soon as a stop is requested.
+     */
+    private void refineMostFit(int generation) {
+        if(mNumRefined == 0)
+            return;
+        LocalSearch search = new LocalSearch(mAvailableResistors, mDesiredResistance, mSizePriority);
+        DNA[] members = mHallOfFame.toArray();
+        int numRefined = Math.min(mNumRefined, members.length);
+        int numImproved = 0;
+        boolean published = false;
+        for(int i = 0; i < numRefined && !isStopRequested(); i ++) {
+            DNA refined = search.refine(members[i]);
+            if(refined == members[i])
+                continue;
+            int position = mHallOfFame.offer(refined);
+            if(position >= 0) {
+                numImproved ++;
+                published |= position < mNumProgress;
             }
-            prevTotalFitness = mTotalFitness;
-            mPop = children(allFitness);
-            String log = String.format("Ending Generation %d, AVG FITNESS: %.5f", i+1, mTotalFitness);
-            System.out.println(log);
         }
-        if(!earlyStoppingTiggered)
-            // Update the fitness for last generation of DNA.
-            computeAllFitness();
+        if(mVerbose)
+            System.out.println(String.format("Local search improved %d of %d circuits.", numImproved, numRefined));
+        if(published)
+            publishProgress(generation);
+    }
+
+    /*
+    Tells the listener, if any, about the most fit circuits of the hall of fame.
+     */
+    private void publishProgress(int generation) {
+        if(mListener == null)
+            return;
+        List<Queue<DNADecipherUnit>> queues = new ArrayList<>();
+        DNA[] members = mHallOfFame.toArray();
+        for(int i = 0; i < members.length && i < mNumProgress; i ++)
+            queues.add(RPNQueue(members[i]));
+        mListener.onProgress(generation, queues);
     }
 
+    /*
+    Splits the population into one contiguous chunk per thread. The total fitness is added up in
+    population order afterwards, so it does not depend on the number of threads.
+     */
     private double[] computeAllFitness() {
-        int numPop = mPop.length;
-        double[] allFitness = new double[numPop];
-        for(int i = 0; i < numPop; i ++) {
-            allFitness[i] = fitness(i);
-            mTotalFitness += allFitness[i];
+        return computeAllFitness(false);
+    }
+
+    /*
+    Same as above, but when interruptible and the token fires part way through, the generation is
+    dropped for the last evaluated one and null is returned.
+     */
+    private double[] computeAllFitness(final boolean interruptible) {
+        int numPop = mPacked ? mFront.size() : mPop.length;
+        final double[] allFitness = new double[numPop];
+        runInChunks(numPop, new ChunkTask() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                FitnessCache cache = mCaches == null ? null : mCaches[chunk];
+                fitnessRange(allFitness, from, to, mKernels[chunk], cache, interruptible);
+            }
+        });
+        // A stop is never withdrawn, so any chunk that gave up early is seen here.
+        if(interruptible && isStopRequested()) {
+            restoreParents();
+            return null;
         }
+        for(double fitness : allFitness)
+            mTotalFitness += fitness;
         return allFitness;
     }
 
     /*
-    Account for size, accuracy, and error propagation?
+    Puts the last evaluated generation back in place of its children.
      */
-    private double fitness(int index) {
-        DNA one = mPop[index];
-        boolean[] survivors = one.getSurvivers();
-        int[][] order = one.getOrder();
-        int[] receivers = order[0];
-        int[] givers = order[1];
-        int[] connections = order[2];
+    private void restoreParents() {
+        if(mPacked) {
+            PackedPopulation children = mFront;
+            mFront = mBack;
+            mBack = children;
+        } else {
+            mPop = mParents;
+        }
+    }
 
-        List<Resistor> sampleResistors = getSelectedResistors(survivors);
+    /*
+    Evaluates the current population once without evolving it. Package-private for benchmarks.
+     */
+    double evaluateFitness() {
+        mTotalFitness = 0;
+        try {
+            computeAllFitness();
+        } finally {
+            shutdownExecutor();
+        }
+        return mTotalFitness;
+    }
 
-        Resistor r = collapseResistors(sampleResistors, receivers, givers, connections);
+    private void fitnessRange(double[] allFitness, int from, int to, CollapseKernel kernel, FitnessCache cache,
+                              boolean interruptible) {
+        for(int i = from; i < to; i ++) {
+            if(interruptible && (i - from) % CancellationToken.CHECK_INTERVAL == 0 && isStopRequested())
+                break;
+            allFitness[i] = fitness(i, kernel, cache);
+        }
+    }
 
-        double weightedSum = inverseWeightedSum(r);
-        //double weightedSum = linearWeightedSum(r);
+    /**
+     * Work done on one contiguous chunk of the population.
+     */
+    private interface ChunkTask {
+        /**
+         * @param chunk Index of the chunk, between [0, numChunks(...)).
+         * @param from First index of the chunk.
+         * @param to Index after the last index of the chunk.
+         */
+        void run(int chunk, int from, int to);
+    }
 
-        one.setFitness(weightedSum);
-        one.setTotalResistance(r.getTempTotalResistance());
-        one.setSize(r.getTempSize());
-        return weightedSum;
+    /**
+     * Number of chunks the population is split into. Depends only on the population size and
+     * parallelism, never on timing.
+     */
+    private int numChunks(int numItems) {
+        if(mParallelism == 1 || numItems < MIN_PARALLEL_POP)
+            return 1;
+        int chunkSize = (numItems + mParallelism - 1) / mParallelism;
+        return (numItems + chunkSize - 1) / chunkSize;
     }
 
-    /*
-    Requires extreme priorities to have visible effect.
+    /**
+     * Runs task on every chunk, on the thread pool when there is more than one chunk.
      */
-    private double inverseWeightedSum(Resistor r) {
-        double diff = Math.abs(mDesiredResistance - r.getTempTotalResistance());
-        double squareSizePenalty = Math.pow(r.getTempSize(), 1.5);
-        double result =  1 / (diff * mAccuracyPriority + squareSizePenalty * mSizePriority);
-        return result;
+    private void runInChunks(int numItems, final ChunkTask task) {
+        int numChunks = numChunks(numItems);
+        if(numChunks == 1) {
+            task.run(0, 0, numItems);
+            return;
+        }
+
+        int chunkSize = (numItems + numChunks - 1) / numChunks;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int chunk = 0; chunk < numChunks; chunk ++) {
+            final int index = chunk;
+            final int from = chunk * chunkSize;
+            final int to = Math.min(from + chunkSize, numItems);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    task.run(index, from, to);
+                    return null;
+                }
+            });
+        }
+        for(Future<Void> done : invokeAll(tasks))
+            getResult(done);
     }
 
-    private double linearWeightedSum(Resistor r) {
-        double diff = Math.abs(mDesiredResistance - r.getTempTotalResistance());
-        double result =  Integer.MAX_VALUE - (diff * mAccuracyPriority + r.getTempSize() * mSizePriority);
-        result = Math.max(result, 0);
-        return result;
+    private <T> List<Future<T>> invokeAll(List<Callable<T>> tasks) {
+        if(mExecutor == null)
+            mExecutor = Executors.newFixedThreadPool(mParallelism);
+        try {
+            return mExecutor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while evolving.", e);
+        }
     }
 
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while evolving.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
 
-    private List<Resistor> getSelectedResistors(boolean[] survivors) {
-        List<Resistor> resistors = new ArrayList<>();
-        for(int i = 0; i < survivors.length; i ++) {
-            if(survivors[i]) {
-                Resistor r = mAvailableResistors[i];
-                // Allows us to track changes via temp variables during evolution
-                r.updateTemps();
-                resistors.add(r);
-            }
+    private void shutdownExecutor() {
+        if(mExecutor != null) {
+            mExecutor.shutdown();
+            mExecutor = null;
         }
-        return resistors;
     }
 
     /*
+    Account for size, accuracy, and error propagation?
+    Safe to call from several threads at once as long as each thread uses its own kernel and cache:
+    the circuit is collapsed in the kernel's buffers instead of in the shared Resistor Objects.
+
     One method for improvement: When an exact match is found, replace the DNA to contain
     only information to recreate the exact match. This prevents unnecessary data from
     propagating into later generations.
      */
-    private Resistor collapseResistors(List<Resistor> sampleResistors, int[] receivers, int[] givers, int[] connections) {
-        int size = receivers.length;
-        for(int i = 0; i < size; i ++) {
-            Resistor r = sampleResistors.get(receivers[i]);
-            Resistor g = sampleResistors.remove(givers[i]);
-            int connection = connections[i];
-            collapseResistorHelper(r, g, connection);
+    private double fitness(int index, CollapseKernel kernel, FitnessCache cache) {
+        DNA one = mPacked ? null : mPop[index];
+        long key = 0;
+        if(cache != null)
+            key = mPacked ? mFront.genomeHash(index) : FitnessCache.genomeHash(one.getSurvivers(), 0,
+                    one.getSurvivers().length, one.getReceivers(), one.getGivers(), one.getConnections(),
+                    0, one.getReceivers().length);
+        double totalResistance;
+        int size;
+        if(cache != null && cache.get(key)) {
+            totalResistance = cache.getTotalResistance();
+            size = cache.getSize();
+        } else {
+            if(mPacked)
+                mFront.collapse(index, kernel);
+            else
+                kernel.collapse(one.getSurvivers(), one.getReceivers(), one.getGivers(), one.getConnections());
+            totalResistance = kernel.getTotalResistance();
+            size = kernel.getSize();
+            if(cache != null)
+                cache.put(key, totalResistance, size);
         }
 
-        if(sampleResistors.size() != 1)
-            throw new ArithmeticException("Collapsed resistor didn't collapse to one resistor.");
-        return sampleResistors.get(0);
+        double weightedSum = inverseWeightedSum(totalResistance, size);
+        //double weightedSum = linearWeightedSum(totalResistance, size);
+
+        if(mPacked) {
+            mFront.setResult(index, weightedSum, totalResistance, size);
+        } else {
+            one.setFitness(weightedSum);
+            one.setTotalResistance(totalResistance);
+            one.setSize(size);
+        }
+        return weightedSum;
     }
 
-    private void collapseResistorHelper(Resistor r, Resistor g, int connection) {
-        double resistance1 = r.getTempTotalResistance();
-        double resistance2 = g.getTempTotalResistance();
+    /*
+    Requires extreme priorities to have visible effect.
+     */
+    private double inverseWeightedSum(double totalResistance, int size) {
+        return inverseWeightedSum(mDesiredResistance, mSizePriority, totalResistance, size);
+    }
 
-        if(connection == Resistor.SERIES) {
-            r.setTempTotalResistance(Resistor.series(resistance1, resistance2));
-        } else if (connection == Resistor.PARALLEL) {
-            r.setTempTotalResistance(Resistor.parallel(resistance1, resistance2));
-        } else {
-            throw new IllegalArgumentException("A connection can only be series or parallel.");
+    /*
+    Same as above for callers without an instance, like the exact solvers, so every engine ranks
+    circuits the same way.
+     */
+    static double inverseWeightedSum(double desiredResistance, int sizePriority, double totalResistance, int size) {
+        double diff = Math.abs(desiredResistance - totalResistance);
+        double squareSizePenalty = Math.pow(size, 1.5);
+        double result =  1 / (diff * (100 - sizePriority) + squareSizePenalty * sizePriority);
+        return result;
+    }
+
+    private double linearWeightedSum(double totalResistance, int size) {
+        double diff = Math.abs(mDesiredResistance - totalResistance);
+        double result =  Integer.MAX_VALUE - (diff * mAccuracyPriority + size * mSizePriority);
+        result = Math.max(result, 0);
+        return result;
+    }
+
+
+    private static List<Resistor> getSelectedResistors(DNA dna, Resistor[] availableResistors) {
+        List<Resistor> resistors = new ArrayList<>();
+        for(int i = 0; i < availableResistors.length; i ++) {
+            if(dna.isSurvivor(i))
+                resistors.add(availableResistors[i]);
         }
-        r.addTempSize(g.getTempSize());
+        return resistors;
     }
 
     /*
@@ -219,38 +909,81 @@ public class EvolveOptimalResistors {
     Need a method based on fitness to determine who moves on to the next generation. This method
     should be O(n) where n is the size of the population. My method is to select a number between
     [0, 100]. Each DNA takes up an area between [0, 100]. The range that covers the selected
-    number will be a parent to the next generation.
+    number will be a parent to the next generation. How the number is mapped to a DNA is up to
+    mSelector; see ParentSelector for the available strategies.
      */
     private DNA[] children(double[] allFitness) {
         int size = mPop.length;
-        DNA[] children = new DNA[size];
-        double[] cumFitness = cumFitnessArr(allFitness);
-        for(int i = 0; i < size; i++) {
-            // Random numbers between [0, 1)
-            double ran1 = Math.random();
-            double ran2 = Math.random();
-            DNA mom = getParent(ran1, cumFitness);
-            DNA dad = getParent(ran2, cumFitness);
-            DNA child = crossover(mom, dad);
-            children[i] = child;
-        }
+        final DNA[] children = new DNA[size];
+        final int[] elites = mostFitIndices(allFitness, mNumElites);
+        mSelector.prepare(allFitness, mTotalFitness, 2 * size, mRandom);
+        // Every child draws from streams of its own, so children do not depend on the chunks.
+        final long survivorsBase = mRandom.nextLong();
+        final long orderBase = mRandom.nextLong();
+        runInChunks(size, new ChunkTask() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                RandomStream random = new RandomStream(survivorsBase);
+                RandomStream orderRandom = new RandomStream(orderBase);
+                for(int i = from; i < to; i++) {
+                    if(i < elites.length) {
+                        // Evaluated again next generation, to the same results.
+                        children[i] = mPop[elites[i]];
+                        continue;
+                    }
+                    random.restart(survivorsBase, i);
+                    orderRandom.restart(orderBase, i);
+                    DNA mom = mPop[mSelector.select(2 * i, random)];
+                    DNA dad = mPop[mSelector.select(2 * i + 1, random)];
+                    DNA child = mom.crossover(dad, mMutationRate, random, orderRandom);
+                    child.canonicalizeSurvivors(mRuns);
+                    children[i] = child;
+                }
+            }
+        });
         return children;
     }
 
-    private double[] cumFitnessArr(double[] allFitness) {
-        int size = allFitness.length;
-        double sum = 0;
-        double[] cumFitness = new double[size];
-        for(int i = 0; i < size; i ++) {
-            sum += (allFitness[i]/mTotalFitness);
-            cumFitness[i] = sum;
-        }
-        return cumFitness;
-    }
-
-    private DNA getParent(double random, double[] cumFitness) {
-        int indexOfParent = getFirstGreaterOrEqual(cumFitness, random);
-        return mPop[indexOfParent];
+    /*
+    Same as children(...), but breeds mFront into mBack and swaps the two buffers. Every child draws
+    from the same streams as in children(...), so both modes breed the same children.
+     */
+    private void packedChildren(double[] allFitness) {
+        int size = mFront.size();
+        final int[] elites = mostFitIndices(allFitness, mNumElites);
+        mSelector.prepare(allFitness, mTotalFitness, 2 * size, mRandom);
+        final long survivorsBase = mRandom.nextLong();
+        final long orderBase = mRandom.nextLong();
+        runInChunks(size, new ChunkTask() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                RandomStream random = new RandomStream(survivorsBase);
+                for(int i = from; i < to; i++) {
+                    if(i < elites.length) {
+                        mBack.cloneSurvivors(i, mFront, elites[i]);
+                        continue;
+                    }
+                    random.restart(survivorsBase, i);
+                    int mom = mSelector.select(2 * i, random);
+                    int dad = mSelector.select(2 * i + 1, random);
+                    mBack.breedSurvivors(i, mFront, mom, dad, mMutationRate, random);
+                }
+            }
+        });
+        mBack.layoutOrders();
+        runInChunks(size, new ChunkTask() {
+            @Override
+            public void run(int chunk, int from, int to) {
+                RandomStream random = new RandomStream(orderBase);
+                for(int i = from; i < to; i++) {
+                    random.restart(orderBase, i);
+                    mBack.breedOrder(i, mFront, mMutationRate, random);
+                }
+            }
+        });
+        PackedPopulation parents = mFront;
+        mFront = mBack;
+        mBack = parents;
     }
 
     public static int getFirstGreaterOrEqual(double[] arr, double target) {
@@ -277,22 +1010,24 @@ public class EvolveOptimalResistors {
             return index;
     }
 
-    private DNA crossover(DNA parent1, DNA parent2) {
-        return parent1.crossover(parent2, mMutationRate);
-    }
-
     /**
      * Holds the resistor that contains the temp information for the completed circuit.
      */
     public Queue<DNADecipherUnit> RPNQueue(DNA dna) {
-        boolean[] survivors = dna.getSurvivers();
+        return RPNQueue(dna, mAvailableResistors);
+    }
+
+    /**
+     * Same as above for DNA built over any array of available resistors.
+     */
+    public static Queue<DNADecipherUnit> RPNQueue(DNA dna, Resistor[] availableResistors) {
         int[][] orders = dna.getOrder();
         int[] receivers = orders[0];
         int[] givers = orders[1];
         int[] connections = orders[2];
         int size = givers.length;
 
-        List<Resistor> sampleResistors = getSelectedResistors(survivors);
+        List<Resistor> sampleResistors = getSelectedResistors(dna, availableResistors);
         Set<Resistor> inQueue = new HashSet<>();
         Queue<DNADecipherUnit> RPN = new LinkedList<>();
         RPN.add(new DNADecipherUnit(dna));
@@ -301,7 +1036,6 @@ public class EvolveOptimalResistors {
             Resistor r = sampleResistors.get(receivers[i]);
             Resistor g = sampleResistors.remove(givers[i]);
             int connection = connections[i];
-            collapseResistorHelper(r, g, connection);
 
             DNADecipherUnit operator = new DNADecipherUnit(connection);
             if(!inQueue.contains(r)) {
@@ -327,55 +1061,82 @@ public class EvolveOptimalResistors {
         return RPN;
     }
 
+    /**
+     * Sorts the whole population, most fit first, and ranks every DNA by its position. Only needed
+     * when every DNA is wanted in order; mostFitDNA(num) and uniqueMostFit...(num) select their DNA
+     * without sorting the population.
+     */
     public void rankDNA() {
         Arrays.sort(mPop);
         for(int i = 0; i < mPop.length; i ++)
             mPop[i].setRank(i+1);
     }
 
+    /**
+     * Most fit DNA of the population, most fit first and ranked from 1.
+     * @param num Number of DNA, or -1 to rank and return the whole population.
+     */
     public DNA[] mostFitDNA(int num) {
-        rankDNA();
         if (num == -1) {
+            rankDNA();
             return mPop;
-        } else {
-            int maxResults = num > mPop.length ? mPop.length : num;
-            DNA[] topResults = Arrays.copyOfRange(mPop, 0, maxResults);
-            return topResults;
         }
+        int maxResults = num > mPop.length ? mPop.length : num;
+        if(maxResults <= 0)
+            return new DNA[0];
+        // Least fit of the kept DNA on top, so each DNA costs O(log num) at most.
+        PriorityQueue<DNA> kept = new PriorityQueue<>(maxResults, Collections.reverseOrder());
+        for(DNA one : mPop) {
+            if(kept.size() < maxResults) {
+                kept.add(one);
+            } else if(one.getFitness() > kept.peek().getFitness()) {
+                kept.poll();
+                kept.add(one);
+            }
+        }
+        DNA[] topResults = new DNA[maxResults];
+        for(int i = maxResults - 1; i >= 0; i --) {
+            topResults[i] = kept.poll();
+            topResults[i].setRank(i + 1);
+        }
+        return topResults;
     }
 
     public List<String> uniqueMostFitStr(int num) {
-        DNA[] topResults = mostFitDNA(-1);
         List<String> visuals = new ArrayList<>();
-        Set<String> used = new HashSet<>();
-        for(int i = 0; i < topResults.length && visuals.size() < num; i ++) {
-            DNA one = topResults[i];
-            String code = one.getTotalResistance() + " " + one.getSize();
-            if (!used.contains(code)) {
-                used.add(code);
-                Queue<DNADecipherUnit> queue = RPNQueue(one);
-                visuals.add(visualizeDNA(queue, true));
-            }
-        }
+        for(DNA one : uniqueMostFit(num))
+            visuals.add(visualizeDNA(RPNQueue(one), true));
         return visuals;
     }
 
     public List<Queue<DNADecipherUnit>> uniqueMostFitQueues(int numTop) {
-        DNA[] dna = mostFitDNA(-1);
         List<Queue<DNADecipherUnit>> queues = new ArrayList<>();
-        Set<String> used = new HashSet<>();
-        for(int i = 0; i < dna.length && queues.size() < numTop; i++) {
-            DNA one = dna[i];
-            String code = one.getTotalResistance() + " " + one.getSize();
-            if (!used.contains(code)) {
-                used.add(code);
-                Queue<DNADecipherUnit> queue = RPNQueue(one);
-                queues.add(queue);
-            }
-        }
+        for(DNA one : uniqueMostFit(numTop))
+            queues.add(RPNQueue(one));
         return queues;
     }
 
+    /**
+     * Most fit unique circuits of the hall of fame and the final population together, most fit
+     * first and ranked from 1. DNA building the same circuit, as told by
+     * CollapseKernel.structuralHash(...), are only returned once, while different circuits with the
+     * same total resistance and size are all kept. Selected in O(P log num) without sorting the
+     * population.
+     */
+    List<DNA> uniqueMostFit(int num) {
+        UniqueTopK top = new UniqueTopK(num, mAvailableResistors);
+        // Offered first, so hall of fame members win ties with equally fit DNA.
+        for(DNA one : mHallOfFame.toArray())
+            top.offer(one);
+        for(DNA one : mPop)
+            if(one.getFitness() > top.threshold())
+                top.offer(one);
+        List<DNA> unique = top.toList();
+        for(int i = 0; i < unique.size(); i ++)
+            unique.get(i).setRank(i + 1);
+        return unique;
+    }
+
     public static String visualizeDNA(Queue<DNADecipherUnit> RPNQueue, boolean appendExtras) {
         DNADecipherUnit first = RPNQueue.poll();
         if(first.type() != DNADecipherUnit.DNA)
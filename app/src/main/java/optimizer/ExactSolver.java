@@ -0,0 +1,95 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds the truly most fit circuits of up to a few resistors by trying every series-parallel
+ * network, instead of evolving towards them.
+ *
+ * Networks with fewer than maxSize resistors are kept in a SubnetworkTable. Networks with exactly
+ * maxSize resistors are only scored as they are built, since there are far more of them. Circuits
+ * are ranked with the same fitness as EvolveOptimalResistors.
+ */
+public class ExactSolver {
+    /**
+     * Largest circuits tried when no size is given. Networks of 5 resistors take seconds to
+     * enumerate once there are a few dozen distinct resistances.
+     */
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    private final SubnetworkTable mTable;
+    private final double mDesiredResistance;
+    private final int mSizePriority;
+    private final int mMaxSize;
+
+    /**
+     * Constructor. Enumerates the networks smaller than maxSize.
+     * @param inventory Available resistors.
+     * @param desiredResistance Resistance to achieve.
+     * @param sizePriority Priority of small circuits over accurate ones, between [0, 100].
+     * @param maxSize Most resistors in a circuit, between [1, SubnetworkTable.MAX_SIZE].
+     */
+    public ExactSolver(Inventory inventory, double desiredResistance, int sizePriority, int maxSize) {
+        if(desiredResistance <= 0)
+            throw new IllegalArgumentException("Desired resistance must be a positive number.");
+        if(sizePriority < 0 || sizePriority > 100)
+            throw new IllegalArgumentException("Percentages must be between [0, 100]");
+        if(maxSize < 1 || maxSize > SubnetworkTable.MAX_SIZE)
+            throw new IllegalArgumentException("Circuits must have between 1 and " + SubnetworkTable.MAX_SIZE + " resistors.");
+        mDesiredResistance = desiredResistance;
+        mSizePriority = sizePriority;
+        mMaxSize = maxSize;
+        mTable = new SubnetworkTable(inventory, Math.max(1, maxSize - 1));
+    }
+
+    /**
+     * Finds the most fit circuits. Structurally identical circuits are only returned once.
+     * @param numTop Number of circuits to return.
+     * @return DNA over getAvailableResistors(), most fit first, with fitness, total resistance,
+     *         size and rank set.
+     */
+    public DNA[] mostFitDNA(int numTop) {
+        final TopCircuits top = new TopCircuits(numTop, mTable);
+        int numStored = mMaxSize == 1 ? mTable.size() : mTable.getLevelEnd(mMaxSize - 1);
+        for(int entry = 0; entry < numStored; entry ++) {
+            double resistance = mTable.getResistance(entry);
+            int size = SubnetworkTable.numParts(mTable.getParts(entry));
+            top.offer(fitness(resistance, size), resistance, size, entry, -1, -1);
+        }
+        if(mMaxSize > 1) {
+            final int size = mMaxSize;
+            mTable.forEachCombination(size, new SubnetworkTable.Visitor() {
+                @Override
+                public void visit(int left, int right, int connection, double resistance, long parts) {
+                    top.offer(fitness(resistance, size), resistance, size, left, right, connection);
+                }
+            });
+        }
+
+        return top.toDNA();
+    }
+
+    /**
+     * Same as mostFitDNA(...), but returns the circuits as RPN queues like
+     * EvolveOptimalResistors.uniqueMostFitQueues(...).
+     */
+    public List<Queue<DNADecipherUnit>> mostFitQueues(int numTop) {
+        List<Queue<DNADecipherUnit>> queues = new ArrayList<>();
+        for(DNA one : mostFitDNA(numTop))
+            queues.add(EvolveOptimalResistors.RPNQueue(one, mTable.getAvailableResistors()));
+        return queues;
+    }
+
+    /**
+     * Available resistors that the returned DNA refer to.
+     */
+    public Resistor[] getAvailableResistors() {
+        return mTable.getAvailableResistors();
+    }
+
+    private double fitness(double resistance, int size) {
+        return EvolveOptimalResistors.inverseWeightedSum(mDesiredResistance, mSizePriority, resistance, size);
+    }
+}
@@ -0,0 +1,126 @@
+package optimizer;
+
+/**
+ * Remembers the total resistance and size of recently collapsed genomes, so children identical to
+ * their parents or to each other are not collapsed again. Converged populations are mostly such
+ * children.
+ *
+ * Genomes are keyed by a 64 bit hash of their survivors and order chromosome, stored with the
+ * results in primitive arrays. Survivors are canonical (see DNA.canonicalizeSurvivors(...)), so
+ * genomes building the same circuit from different copies of a resistance share a key. The table
+ * has a fixed capacity; a new genome that finds no free slot near its home replaces the one there.
+ *
+ * A cache is not thread safe. Like CollapseKernel, every thread evaluating fitness owns its own.
+ */
+class FitnessCache {
+    /**
+     * Slots looked at past the home slot before replacing it.
+     */
+    private static final int MAX_PROBES = 4;
+    /**
+     * Marks a free slot. Hashes that come out as EMPTY are stored as another value.
+     */
+    private static final long EMPTY = 0;
+
+    private final long[] mKeys;
+    private final double[] mTotalResistances;
+    private final int[] mSizes;
+    private final int mMask;
+    private long mHits;
+    private long mMisses;
+    /**
+     * Results of the last successful get(...).
+     */
+    private double mTotalResistance;
+    private int mSize;
+
+    /**
+     * Constructor.
+     * @param capacity Most genomes remembered, rounded up to a power of 2.
+     */
+    FitnessCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        mKeys = new long[size];
+        mTotalResistances = new double[size];
+        mSizes = new int[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * Hash of a genome stored like in CollapseKernel.collapse(...).
+     */
+    static long genomeHash(long[] survivors, int survivorsOffset, int numWords,
+                           int[] receivers, int[] givers, int[] connections, int orderOffset, int orderLength) {
+        long hash = orderLength;
+        for(int w = 0; w < numWords; w ++)
+            hash = mix(hash ^ survivors[survivorsOffset + w]);
+        for(int i = orderOffset; i < orderOffset + orderLength; i ++)
+            hash = mix(hash ^ (((long) receivers[i] << 33) ^ ((long) givers[i] << 2) ^ connections[i]));
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    /*
+    Finalizer of SplitMix64, so every input bit affects every output bit.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Looks up a genome. On a hit the results are read with getTotalResistance() and getSize().
+     * @param key Hash from genomeHash(...).
+     * @return True on a hit.
+     */
+    boolean get(long key) {
+        int home = (int) key & mMask;
+        for(int probe = 0; probe <= MAX_PROBES; probe ++) {
+            int slot = (home + probe) & mMask;
+            if(mKeys[slot] == key) {
+                mTotalResistance = mTotalResistances[slot];
+                mSize = mSizes[slot];
+                mHits ++;
+                return true;
+            }
+            if(mKeys[slot] == EMPTY)
+                break;
+        }
+        mMisses ++;
+        return false;
+    }
+
+    /**
+     * Remembers the results of a genome that missed.
+     */
+    void put(long key, double totalResistance, int size) {
+        int home = (int) key & mMask;
+        int target = home;
+        for(int probe = 0; probe <= MAX_PROBES; probe ++) {
+            int slot = (home + probe) & mMask;
+            if(mKeys[slot] == EMPTY) {
+                target = slot;
+                break;
+            }
+        }
+        mKeys[target] = key;
+        mTotalResistances[target] = totalResistance;
+        mSizes[target] = size;
+    }
+
+    double getTotalResistance() {
+        return mTotalResistance;
+    }
+
+    int getSize() {
+        return mSize;
+    }
+
+    long getHits() {
+        return mHits;
+    }
+
+    long getMisses() {
+        return mMisses;
+    }
+}
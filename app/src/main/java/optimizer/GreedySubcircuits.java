@@ -1,37 +1,87 @@
 package optimizer;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class GreedySubcircuits {
+    /**
+     * Default seed budget as a percent of the population, see generateDNA(...).
+     */
+    public static final int DEFAULT_SEED_PERCENT = 40;
+    /**
+     * Fewest starts worth handing to another thread.
+     */
+    private static final int MIN_STARTS_PER_THREAD = 64;
 
     private final Resistor[] mResistors;
+    /**
+     * Resistance of every resistor in mResistors, in ascending order.
+     */
+    private final double[] mResistances;
+    /**
+     * Resistors of mResistors not used yet by the circuit being grown on the calling thread.
+     */
+    private final AvailabilityTree mAvailable;
+    /**
+     * First index of every distinct resistance in mResistors.
+     */
+    private final int[] mStarts;
     private final double mDesiredResistance;
-    private DNA[] mDNA;
-    private HashMap<Resistor, Integer> indices;
+    private DNA[] mDNA = new DNA[0];
 
     /**
      * Constructor to keep arguments and initialize instance variables. Goal is to provide
      * genetic algorithm with close to optimal initial DNA to reduce number of generations.
-     * @param resistances Array of resistances.
+     * @param resistances Array of resistances, one per resistor.
+     * @param desiredResistance Resistance to achieve.
+     */
+    public GreedySubcircuits(double[] resistances, double desiredResistance) {
+        this(Inventory.fromResistances(resistances), desiredResistance);
+    }
+
+    /**
+     * Same as above, but the resistors are given as distinct resistances and their quantities.
+     * getFormattedResistances() holds at most Inventory.DEFAULT_MAX_COPIES of each resistance.
+     * @param inventory Available resistors.
      * @param desiredResistance Resistance to achieve.
-     * @param percentToProvide Percent of initial DNA to provided. Value should be [0, 100].
      */
-    public GreedySubcircuits(double[] resistances, double desiredResistance, double percentToProvide) {
+    public GreedySubcircuits(Inventory inventory, double desiredResistance) {
+        this(inventory.toResistors(), desiredResistance);
+    }
+
+    /**
+     * Same as above, but over resistors that are already built, like Inventory.toResistors() or
+     * AchievableIndex.getAvailableResistors(), so searches for several desired resistances can
+     * share them. The resistors are used as they are and not copied.
+     * @param availableResistors Available resistors in ascending order.
+     * @param desiredResistance Resistance to achieve.
+     */
+    public GreedySubcircuits(Resistor[] availableResistors, double desiredResistance) {
         if (desiredResistance <= 0)
             throw new IllegalArgumentException("Desired resistance must be a positive number.");
-        if (resistances.length == 0)
+        if (availableResistors.length == 0)
             throw new IllegalArgumentException("Must supply at least one resistor.");
-        if(percentToProvide > 100  || percentToProvide < 0)
-            throw new IllegalArgumentException("Percent of DNA to provide must be between [0, 100]");
-        mResistors = formatResistors(resistances);
+        mResistors = availableResistors;
+        mResistances = new double[mResistors.length];
+        int numStarts = 0;
+        for(int i = 0; i < mResistors.length; i++) {
+            mResistances[i] = mResistors[i].getResistance();
+            if(i > 0 && mResistances[i] < mResistances[i - 1])
+                throw new IllegalArgumentException("Resistors must be in ascending order.");
+            if(i == 0 || mResistances[i] != mResistances[i - 1])
+                numStarts++;
+        }
+        mAvailable = new AvailabilityTree(mResistors.length);
+        mStarts = new int[numStarts];
+        numStarts = 0;
+        for(int i = 0; i < mResistors.length; i++)
+            if(i == 0 || mResistances[i] != mResistances[i - 1])
+                mStarts[numStarts++] = i;
         mDesiredResistance = desiredResistance;
-        int DNASize = (int)Math.round(percentToProvide/100.0*resistances.length);
-        mDNA = new DNA[DNASize];
-
-        // For building the subcircuit DNA. (worth the expense?)
-        indices = new HashMap();
-        for(int i = 0; i < resistances.length; i++)
-            indices.put(mResistors[i], i);
     }
 
     /**
@@ -110,6 +160,42 @@ public class GreedySubcircuits {
         }
     }
 
+    /**
+     * Same as above, but only looks at resistors not used yet by the circuit being grown. Takes
+     * O(log n) instead of copying the unused resistors into a list.
+     * @param resistance Value to find.
+     * @param available Resistors not used yet.
+     * @return Index in mResistors of the closest available resistor, or -1 if none are left.
+     */
+    private int indexOfClosestAvailable(double resistance, AvailabilityTree available) {
+        int first = indexOfFirstAtLeast(resistance);
+        int before = available.countBefore(first);
+        int lower = before > 0 ? available.select(before - 1) : -1;
+        int upper = before < available.getNumAvailable() ? available.select(before) : -1;
+        if (lower < 0)
+            return upper;
+        if (upper < 0 || resistance - mResistances[lower] <= mResistances[upper] - resistance)
+            // The first available copy of that resistance, see growOn(...).
+            return available.select(available.countBefore(indexOfFirstAtLeast(mResistances[lower])));
+        return upper;
+    }
+
+    /**
+     * Index of the first resistor with a resistance >= resistance, or the number of resistors if
+     * there is none.
+     */
+    private int indexOfFirstAtLeast(double resistance) {
+        int l = 0, r = mResistances.length;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (mResistances[m] < resistance)
+                l = m + 1;
+            else
+                r = m;
+        }
+        return l;
+    }
+
     /**
      * Finds the best resistance to add in series with argument to minimize difference
      * between desired resistance and argument.
@@ -139,111 +225,183 @@ public class GreedySubcircuits {
     }
 
     /**
-     * Generate the DNA for greedy approach to build equivalence resistance.
+     * Generate the DNA for greedy approach to build equivalence resistance, on the calling thread.
+     * @param budget Most DNA to generate, normally DEFAULT_SEED_PERCENT of the population.
+     */
+    public void generateDNA(int budget) {
+        generateDNA(budget, 1);
+    }
+
+    /**
+     * Same as above, but the circuits are grown on up to parallelism threads.
+     *
+     * Circuits are grown from distinct resistances only, since starting from another copy of a
+     * resistance grows the same circuit. When there are more distinct resistances than the budget,
+     * the starts are spread evenly over them. Starts that grow the same circuit as an earlier start
+     * (see CollapseKernel.structuralHash(...)) are dropped, so getDNA() may hold fewer than budget
+     * DNA. Nothing is random, and the result does not depend on parallelism.
+     * @param budget Most DNA to generate, at least 0.
+     * @param parallelism Most threads, at least 1.
+     */
+    public void generateDNA(int budget, int parallelism) {
+        if(budget < 0)
+            throw new IllegalArgumentException("Budget must be >= 0.");
+        if(parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be a positive number.");
+        int numStarts = Math.min(budget, mStarts.length);
+        int[] starts = new int[numStarts];
+        for(int k = 0; k < numStarts; k++)
+            starts[k] = mStarts[(int)((long) k * mStarts.length / numStarts)];
+
+        DNA[] grown = new DNA[numStarts];
+        int numThreads = Math.min(parallelism, numStarts / MIN_STARTS_PER_THREAD);
+        if(numThreads <= 1)
+            growRange(starts, grown, 0, numStarts, mAvailable);
+        else
+            growInParallel(starts, grown, numThreads);
+
+        CollapseKernel kernel = new CollapseKernel(mResistors);
+        Set<Long> seen = new HashSet<>();
+        List<DNA> unique = new ArrayList<>();
+        for(DNA one : grown)
+            if(seen.add(kernel.structuralHash(one)))
+                unique.add(one);
+        mDNA = unique.toArray(new DNA[0]);
+    }
+
+    /*
+    Grows DNA from starts [from, to) into the same positions of grown.
      */
-    public void generateDNA() {
-        for(int i = 0; i < mDNA.length; i++) {
-            int index = (int)(Math.random()*mResistors.length);
-            mDNA[i] = growOn(index);
+    private void growRange(int[] starts, DNA[] grown, int from, int to, AvailabilityTree available) {
+        for(int k = from; k < to; k++)
+            grown[k] = growOn(starts[k], available);
+    }
+
+    /*
+    Splits the starts into one contiguous chunk per thread. Every thread needs its own record of
+    the resistors its circuit uses.
+     */
+    private void growInParallel(final int[] starts, final DNA[] grown, int numThreads) {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(int t = 0; t < numThreads; t++) {
+                final int from = (int)((long) t * starts.length / numThreads);
+                final int to = (int)((long) (t + 1) * starts.length / numThreads);
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        growRange(starts, grown, from, to, new AvailabilityTree(mResistors.length));
+                        return null;
+                    }
+                });
+            }
+            for(Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while growing subcircuits.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdown();
         }
     }
 
     public DNA growOnTest(int i) {
-        return growOn(i);
+        return growOn(i, mAvailable);
     }
 
     /**
      * Finds and returns DNA for greedy approach.
-     * May be too inefficient. Find a better heuristic to use.
+     *
+     * The unused resistors are tracked in an AvailabilityTree, so a step costs O(log n) and the resistors
+     * this circuit took are given back at the end instead of rebuilding the list for every start.
+     * Of several equal resistors the first available one is always taken, so the survivors of every
+     * run of equal resistors are already at its start (see DNA.canonicalizeSurvivors(...)).
      *
      * @param startI Index to start greedy search.
+     * @param available Resistors not used yet, given back as they were.
      * @return DNA of greedy solution.
      */
-    private DNA growOn(int startI) {
-        // Create mutable list of Resistor Objects to grow from. Unused resistors are stored here.
-        List<Resistor> resistors = new ArrayList<>(); Collections.addAll(resistors, mResistors);
-        Resistor startResistor = resistors.remove(startI);
-        double totalResistance = startResistor.getResistance();
+    private DNA growOn(int startI, AvailabilityTree available) {
+        double totalResistance = mResistances[startI];
+        startI = indexOfFirstAtLeast(totalResistance);
 
         // Setting up algorithm
         int max = 15; // Used to ensure near constant time.
-        List<Resistor> involvedR = new ArrayList<>();
-        involvedR.add(startResistor);
+        // Indices of the resistors in the circuit, in the order they were added.
+        int[] involved = new int[max + 1];
+        involved[0] = startI;
+        int numSurvivors = 1;
 
         // Setting up information for DNA.
-        boolean[] survivors = new boolean[mResistors.length];
-        survivors[startI] = true;
+        long[] survivors = new long[DNA.numWords(mResistors.length)];
+        survivors[startI >>> 6] |= 1L << startI;
         int[] connections = new int[max];
 
-        // Building subcircuit DNA.
-        for(int i = 0; i < max && resistors.size() > 0; i++) {
-            if (totalResistance < mDesiredResistance) {
-                // Need to increase resistance value in this resistor via adding in series.
-                int bestI = indexOfClosestResistance(resistors, bestSeriesResistance(totalResistance));
-                Resistor bestResistor = resistors.get(bestI);
-                double bestR = bestResistor.getResistance();
-                double newR = Resistor.series(totalResistance, bestR);
-
-                double newDiff = Math.abs(mDesiredResistance - newR);
-                double oldDiff = Math.abs(mDesiredResistance - totalResistance);
-                if (newDiff < oldDiff) {
-                    // Adding resistor is beneficial.
-                    survivors[indices.get(bestResistor)] = true;
-                    connections[i] = Resistor.SERIES;
-                    totalResistance = newR;
-                    involvedR.add(bestResistor);
-                    resistors.remove(bestI);
+        available.take(startI);
+        try {
+            // Building subcircuit DNA.
+            for(int i = 0; i < max && available.getNumAvailable() > 0; i++) {
+                int connection;
+                int bestIndex;
+                double newR;
+                if (totalResistance < mDesiredResistance) {
+                    // Need to increase resistance value in this resistor via adding in series.
+                    connection = Resistor.SERIES;
+                    bestIndex = indexOfClosestAvailable(bestSeriesResistance(totalResistance), available);
+                    newR = Resistor.series(totalResistance, mResistances[bestIndex]);
                 } else {
-                    break;
+                    // Need to decrease the resistance value in this resistor.
+                    connection = Resistor.PARALLEL;
+                    bestIndex = indexOfClosestAvailable(bestParallelResistance(totalResistance), available);
+                    newR = Resistor.parallel(totalResistance, mResistances[bestIndex]);
                 }
-            } else {
-                // Need to decrease the resistance value in this resistor.
-                double bestParallel = bestParallelResistance(totalResistance);
-                int bestI = indexOfClosestResistance(resistors, bestParallel);
-                Resistor bestResistor = resistors.get(bestI);
-                double bestR = bestResistor.getResistance();
-                double newR = Resistor.parallel(totalResistance, bestR);
-
 
                 double newDiff = Math.abs(mDesiredResistance - newR);
                 double oldDiff = Math.abs(mDesiredResistance - totalResistance);
-                if (newDiff < oldDiff) {
-                    // Adding resistor is beneficial.
-                    survivors[indices.get(bestResistor)] = true;
-                    connections[i] = Resistor.PARALLEL;
-                    totalResistance = newR;
-                    involvedR.add(bestResistor);
-                    resistors.remove(bestI);
-                } else {
+                if (newDiff >= oldDiff)
                     break;
-                }
+                // Adding resistor is beneficial.
+                survivors[bestIndex >>> 6] |= 1L << bestIndex;
+                connections[i] = connection;
+                totalResistance = newR;
+                involved[numSurvivors++] = bestIndex;
+                available.take(bestIndex);
             }
+        } finally {
+            // Ready for the next start.
+            for(int i = 0; i < numSurvivors; i++)
+                available.giveBack(involved[i]);
         }
 
         // Setting up information for DNA Object.
-        int numSurvivors = involvedR.size();
         int[] receivers = new int[numSurvivors-1]; // Should always contain index for startResistor.
         int[] givers = new int[numSurvivors-1];
         int[] connectionsFit = Arrays.copyOfRange(connections, 0, numSurvivors-1);
 
-        // Sorting involved Resistors to build DNA.
-        List<Resistor> connectors = new ArrayList<>(involvedR.subList(1, numSurvivors));
-        Collections.sort(involvedR);
-        int receiverI = involvedR.indexOf(startResistor);
+        // Survivors are selected in index order, so the order refers to the involved indices sorted.
+        int[] remaining = Arrays.copyOf(involved, numSurvivors);
+        Arrays.sort(remaining);
+        int numRemaining = numSurvivors;
+        int receiverI = Arrays.binarySearch(remaining, startI);
         for(int i = 0; i < numSurvivors-1; i++) {
-            // Always adding to starting resistor: Resistor receiver = startResistor;
-            Resistor giver = connectors.get(i);
-
-            int giverIndex = involvedR.indexOf(giver);
+            // Always adding to starting resistor.
+            int giverIndex = Arrays.binarySearch(remaining, 0, numRemaining, involved[i + 1]);
             receivers[i] = receiverI;
             givers[i] = giverIndex;
 
-            involvedR.remove(giverIndex);
+            System.arraycopy(remaining, giverIndex + 1, remaining, giverIndex, numRemaining - giverIndex - 1);
+            numRemaining--;
             if(giverIndex < receiverI)
                 --receiverI;
         }
 
-        return new DNA(survivors, numSurvivors, receivers, givers, connectionsFit);
+        return new DNA(survivors, mResistors.length, numSurvivors, receivers, givers, connectionsFit);
     }
 
     /**
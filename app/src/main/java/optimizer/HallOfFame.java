@@ -0,0 +1,110 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Most fit unique circuits seen by any of several searches. DNA building the same circuit are only
+ * kept once, like in EvolveOptimalResistors.uniqueMostFitQueues(...); see
+ * CollapseKernel.structuralHash(...).
+ *
+ * Safe to share between threads. Offered DNA are copied when they get in, so callers can keep
+ * using theirs.
+ */
+public class HallOfFame {
+    private final int mCapacity;
+    /**
+     * Members, most fit first.
+     */
+    private final List<DNA> mMembers = new ArrayList<>();
+    /**
+     * Structural hash of every member, in the same order.
+     */
+    private final long[] mHashes;
+    private final CollapseKernel mKernel;
+
+    /**
+     * Constructor.
+     * @param capacity Most circuits kept.
+     * @param availableResistors Available resistors every offered DNA is built over.
+     */
+    public HallOfFame(int capacity, Resistor[] availableResistors) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Capacity must be a positive number.");
+        mCapacity = capacity;
+        mHashes = new long[capacity];
+        mKernel = new CollapseKernel(availableResistors);
+    }
+
+    /**
+     * Offers a circuit.
+     * @param dna Evaluated DNA.
+     * @return Position it got in at, 0 being the most fit, or -1 if it did not get in.
+     */
+    public synchronized int offer(DNA dna) {
+        double fitness = dna.getFitness();
+        int numMembers = mMembers.size();
+        if(numMembers == mCapacity && fitness <= mMembers.get(numMembers - 1).getFitness())
+            return -1;
+        long hash = mKernel.structuralHash(dna);
+        int position = numMembers;
+        for(int i = 0; i < numMembers; i ++) {
+            if(mHashes[i] == hash)
+                return -1;
+            if(position == numMembers && fitness > mMembers.get(i).getFitness())
+                position = i;
+        }
+        mMembers.add(position, dna.copy());
+        if(mMembers.size() > mCapacity)
+            mMembers.remove(mMembers.size() - 1);
+        // Shift the hashes after position, dropping the last one if it fell out.
+        System.arraycopy(mHashes, position, mHashes, position + 1, mMembers.size() - position - 1);
+        mHashes[position] = hash;
+        return position;
+    }
+
+    /**
+     * Offers several circuits while taking the lock once, so searches sharing the hall of fame wait
+     * on each other once per batch rather than once per circuit.
+     * @param dnas Evaluated DNA, preferably most fit first.
+     * @param count Number of DNA of dnas to offer, from the first.
+     * @return Best position any of them got in at, or -1 if none did.
+     */
+    public synchronized int offerAll(DNA[] dnas, int count) {
+        int best = -1;
+        for(int i = 0; i < count; i ++) {
+            int position = offer(dnas[i]);
+            if(position >= 0 && (best < 0 || position < best))
+                best = position;
+        }
+        return best;
+    }
+
+    /**
+     * Fitness a circuit must beat to get in, or -infinity while there is room.
+     */
+    public synchronized double threshold() {
+        int numMembers = mMembers.size();
+        return numMembers < mCapacity ? Double.NEGATIVE_INFINITY : mMembers.get(numMembers - 1).getFitness();
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public synchronized int size() {
+        return mMembers.size();
+    }
+
+    /**
+     * Copies of the members, most fit first, ranked from 1.
+     */
+    public synchronized DNA[] toArray() {
+        DNA[] members = new DNA[mMembers.size()];
+        for(int i = 0; i < members.length; i ++) {
+            members[i] = mMembers.get(i).copy();
+            members[i].setRank(i + 1);
+        }
+        return members;
+    }
+}
@@ -0,0 +1,161 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Available resistors stored as distinct resistances and how many of each are available, instead
+ * of one entry per physical resistor.
+ *
+ * The optimizer still works on an array of Resistor Objects, but toResistors() gives each distinct
+ * resistance at most maxCopies entries. A circuit never needs more copies of one resistance than
+ * that, so the work done per DNA scales with the number of distinct resistances instead of the
+ * total number of resistors. Entries of equal resistance are next to each other, and DNA only keeps
+ * track of how many of them survive (see findRuns(...)).
+ */
+public class Inventory {
+    /**
+     * Most copies of one resistance given to the optimizer. Greedy circuits use at most 16 resistors,
+     * and the size penalty keeps evolved circuits smaller than that.
+     */
+    public static final int DEFAULT_MAX_COPIES = 16;
+
+    /**
+     * Distinct resistances in ascending order.
+     */
+    private final double[] mResistances;
+    /**
+     * Number of resistors available for every resistance.
+     */
+    private final int[] mCounts;
+
+    /**
+     * Constructor. Equal resistances are merged.
+     * @param resistances Resistances.
+     * @param counts Number of resistors available for every resistance.
+     */
+    public Inventory(double[] resistances, int[] counts) {
+        if(resistances.length != counts.length)
+            throw new IllegalArgumentException("Every resistance needs a quantity.");
+        TreeMap<Double, Integer> merged = new TreeMap<>();
+        for(int i = 0; i < resistances.length; i ++) {
+            if(resistances[i] <= 0)
+                throw new IllegalArgumentException("Resistances must be positive numbers.");
+            if(counts[i] <= 0)
+                throw new IllegalArgumentException("Quantities must be positive numbers.");
+            Integer count = merged.get(resistances[i]);
+            long total = (count == null ? 0L : count) + counts[i];
+            merged.put(resistances[i], (int)Math.min(total, Integer.MAX_VALUE));
+        }
+        mResistances = new double[merged.size()];
+        mCounts = new int[merged.size()];
+        int i = 0;
+        for(Map.Entry<Double, Integer> entry : merged.entrySet()) {
+            mResistances[i] = entry.getKey();
+            mCounts[i] = entry.getValue();
+            i ++;
+        }
+    }
+
+    /**
+     * Builds an inventory from one resistance per physical resistor.
+     * @param resistances Resistances. Duplicates are counted.
+     * @return Inventory.
+     */
+    public static Inventory fromResistances(double[] resistances) {
+        int[] counts = new int[resistances.length];
+        for(int i = 0; i < counts.length; i ++)
+            counts[i] = 1;
+        return new Inventory(resistances, counts);
+    }
+
+    /**
+     * Same as below with DEFAULT_MAX_COPIES.
+     */
+    public Resistor[] toResistors() {
+        return toResistors(DEFAULT_MAX_COPIES);
+    }
+
+    /**
+     * Creates the available resistors for the optimizer, in ascending order.
+     * @param maxCopies Most entries given to one resistance.
+     * @return Resistor array.
+     */
+    public Resistor[] toResistors(int maxCopies) {
+        if(maxCopies < 1)
+            throw new IllegalArgumentException("Must allow at least one copy of every resistance.");
+        List<Resistor> resistors = new ArrayList<>();
+        for(int i = 0; i < mResistances.length; i ++) {
+            int copies = Math.min(mCounts[i], maxCopies);
+            for(int copy = 0; copy < copies; copy ++)
+                resistors.add(new Resistor(mResistances[i]));
+        }
+        return resistors.toArray(new Resistor[0]);
+    }
+
+    /**
+     * Finds the runs of adjacent resistors with equal resistance. Which resistors of a run survive
+     * makes no difference to the circuit, so DNA keep the survivors of a run at its start and only
+     * the number of survivors in the run matters.
+     * @param resistors Available resistors, normally in ascending order.
+     * @return Start and end (exclusive) of every run longer than one resistor, one pair after the other.
+     */
+    public static int[] findRuns(Resistor[] resistors) {
+        List<Integer> runs = new ArrayList<>();
+        int start = 0;
+        for(int i = 1; i <= resistors.length; i ++) {
+            if(i == resistors.length || resistors[i].getResistance() != resistors[start].getResistance()) {
+                if(i - start > 1) {
+                    runs.add(start);
+                    runs.add(i);
+                }
+                start = i;
+            }
+        }
+        int[] arr = new int[runs.size()];
+        for(int i = 0; i < arr.length; i ++)
+            arr[i] = runs.get(i);
+        return arr;
+    }
+
+    /**
+     * Number of distinct resistances.
+     */
+    public int size() {
+        return mResistances.length;
+    }
+
+    public double getResistance(int i) {
+        return mResistances[i];
+    }
+
+    public int getCount(int i) {
+        return mCounts[i];
+    }
+
+    /**
+     * Total number of physical resistors.
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for(int count : mCounts)
+            total += count;
+        return total;
+    }
+
+    /**
+     * Hash of the resistances and quantities. Equal inventories have equal hashes no matter what
+     * order the resistors were given in, so it can key results that only depend on the inventory.
+     */
+    public long contentHash() {
+        // 64 bit FNV-1a over the resistance bits and quantities.
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < mResistances.length; i ++) {
+            hash = (hash ^ Double.doubleToLongBits(mResistances[i])) * 0x100000001b3L;
+            hash = (hash ^ mCounts[i]) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
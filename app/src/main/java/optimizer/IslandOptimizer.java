@@ -0,0 +1,286 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Evolves several independent populations (islands) on their own threads instead of one large
+ * population split across threads, so no thread waits for the others between generations.
+ *
+ * The islands form a ring. Every few generations each island sends copies of its most fit DNA to
+ * the next island's mailbox and takes whatever is waiting in its own, where they replace its least
+ * fit DNA. A mailbox holds only the latest migrants and is swapped atomically, so islands never
+ * block on each other. Every island offers the DNA of every generation straight to one shared
+ * HallOfFame, which holds the results and is refined by a local search once all islands stop.
+ *
+ * The islands also stop together. A single StoppingPolicy looks at the generations of all islands
+ * as they come, and once it says stop every island stops at its next generation, so no island
+ * gives up while migration could still bring it better DNA.
+ */
+public class IslandOptimizer {
+    /**
+     * Generations between two migrations.
+     */
+    public static final int DEFAULT_MIGRATION_INTERVAL = 5;
+    /**
+     * DNA sent by an island per migration.
+     */
+    public static final int DEFAULT_NUM_MIGRANTS = 4;
+    /**
+     * Migrations an improvement gets to spread around the ring before the islands stop for
+     * stagnation.
+     */
+    public static final int DEFAULT_STAGNANT_MIGRATIONS = 2;
+    /**
+     * Most circuits kept in the hall of fame.
+     */
+    private static final int HALL_OF_FAME_SIZE = 50;
+
+    private final EvolveOptimalResistors[] mIslands;
+    private final Resistor[] mAvailableResistors;
+    /**
+     * Latest migrants waiting for every island, or null when there are none.
+     */
+    private final AtomicReferenceArray<DNA[]> mMailboxes;
+    private final HallOfFame mHallOfFame;
+    private final double mDesiredResistance;
+    private final int mSizePriority;
+    private int mMigrationInterval = DEFAULT_MIGRATION_INTERVAL;
+    private int mNumMigrants = DEFAULT_NUM_MIGRANTS;
+    /**
+     * Checked for every generation of every island, or null for defaultStoppingPolicy().
+     */
+    private StoppingPolicy mStoppingPolicy;
+    private CancellationToken mToken;
+    /**
+     * Why the islands stop, or StoppingPolicy.CONTINUE while they run. Guarded by mStopLock.
+     */
+    private int mStopReason = StoppingPolicy.CONTINUE;
+    private final Object mStopLock = new Object();
+
+    /**
+     * Constructor.
+     * @param availableResistors Available resistors.
+     * @param desiredResistance Resistance to achieve.
+     * @param sizePriority Priority of small circuits over accurate ones, between [0, 100].
+     * @param popSize Total population, split evenly between the islands.
+     * @param mutationRate Mutation rate, between [0, 100].
+     * @param numGen Most generations evolved by every island.
+     * @param numIslands Number of islands, each evolved on its own thread.
+     * @param random Random stream. Every island gets its own stream split from it.
+     * @param initial DNA dealt out to the islands in turn.
+     */
+    public IslandOptimizer(Resistor[] availableResistors, double desiredResistance, int sizePriority, int popSize,
+                           int mutationRate, int numGen, int numIslands, RandomStream random, DNA[] initial) {
+        if(numIslands < 1)
+            throw new IllegalArgumentException("Number of islands must be a positive number.");
+        if(popSize < numIslands)
+            throw new IllegalArgumentException("Every island needs at least one DNA.");
+        mAvailableResistors = availableResistors;
+        mDesiredResistance = desiredResistance;
+        mSizePriority = sizePriority;
+        mIslands = new EvolveOptimalResistors[numIslands];
+        mMailboxes = new AtomicReferenceArray<>(numIslands);
+        mHallOfFame = new HallOfFame(HALL_OF_FAME_SIZE, availableResistors);
+        for(int k = 0; k < numIslands; k ++) {
+            // Islands never hold more initial DNA than their population.
+            int islandSize = popSize / numIslands + (k < popSize % numIslands ? 1 : 0);
+            List<DNA> islandInitial = new ArrayList<>();
+            for(int i = k; i < initial.length && islandInitial.size() < islandSize; i += numIslands)
+                islandInitial.add(initial[i]);
+            EvolveOptimalResistors island = new EvolveOptimalResistors(availableResistors, desiredResistance,
+                    sizePriority, islandSize, mutationRate, numGen, 1, random.split(),
+                    islandInitial.toArray(new DNA[0]));
+            island.setGenerationHook(new Migration(k));
+            island.setHallOfFame(mHallOfFame);
+            island.setStoppingPolicy(new SharedStop());
+            // The shared hall of fame is refined once, after every island stops.
+            island.setLocalSearch(0);
+            mIslands[k] = island;
+        }
+    }
+
+    /**
+     * Chooses how often and how many DNA move between islands.
+     * @param interval Generations between two migrations, at least 1.
+     * @param numMigrants DNA sent by an island per migration, at least 0.
+     */
+    public void setMigration(int interval, int numMigrants) {
+        if(interval < 1)
+            throw new IllegalArgumentException("Migration interval must be a positive number.");
+        if(numMigrants < 0)
+            throw new IllegalArgumentException("Number of migrants must be >= 0.");
+        mMigrationInterval = interval;
+        mNumMigrants = numMigrants;
+    }
+
+    /**
+     * Chooses when the islands stop before numGen generations. The policy sees the generations of
+     * all islands, in the order they are evaluated, and stops every island as soon as it stops one.
+     * A stagnation window therefore counts generations of any island.
+     * @param policy Policy, or null for defaultStoppingPolicy() (default).
+     */
+    public void setStoppingPolicy(StoppingPolicy policy) {
+        mStoppingPolicy = policy;
+    }
+
+    /**
+     * Stops on an exact match, or once no island has improved on the most fit circuit for
+     * DEFAULT_STAGNANT_MIGRATIONS migrations of every island. Unlike
+     * StoppingPolicy.createDefault(), it ignores the diversity of a single island, which migration
+     * restores.
+     */
+    public StoppingPolicy defaultStoppingPolicy() {
+        return StoppingPolicy.anyOf(StoppingPolicy.exactMatch(),
+                StoppingPolicy.stagnation(DEFAULT_STAGNANT_MIGRATIONS * mMigrationInterval * mIslands.length));
+    }
+
+    /**
+     * Lets every island stop early. See EvolveOptimalResistors.setCancellationToken(...).
+     */
+    public void setCancellationToken(CancellationToken token) {
+        mToken = token;
+        for(EvolveOptimalResistors island : mIslands)
+            island.setCancellationToken(token);
+    }
+
+    /**
+     * Evolves every island until they stop, then refines the most fit circuits of the hall of fame.
+     */
+    public void evolve() {
+        if(mStoppingPolicy == null)
+            mStoppingPolicy = defaultStoppingPolicy();
+        mStoppingPolicy.reset();
+        mStopReason = StoppingPolicy.CONTINUE;
+        for(int k = 0; k < mIslands.length; k ++)
+            mMailboxes.set(k, null);
+        ExecutorService executor = Executors.newFixedThreadPool(mIslands.length);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(final EvolveOptimalResistors island : mIslands) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        island.evolve();
+                        return null;
+                    }
+                });
+            }
+            for(Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while evolving islands.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            executor.shutdown();
+        }
+
+        refineMostFit();
+    }
+
+    /*
+    Same as the local search of EvolveOptimalResistors, over the shared hall of fame. Gives up as
+    soon as a stop is requested.
+     */
+    private void refineMostFit() {
+        LocalSearch search = new LocalSearch(mAvailableResistors, mDesiredResistance, mSizePriority);
+        DNA[] members = mHallOfFame.toArray();
+        int numRefined = Math.min(EvolveOptimalResistors.DEFAULT_NUM_REFINED * mIslands.length, members.length);
+        for(int i = 0; i < numRefined && (mToken == null || !mToken.isStopRequested()); i ++) {
+            DNA refined = search.refine(members[i]);
+            if(refined != members[i])
+                mHallOfFame.offer(refined);
+        }
+    }
+
+    /**
+     * Most fit unique circuits found by any island, most fit first and ranked from 1.
+     */
+    public DNA[] mostFitDNA(int numTop) {
+        DNA[] all = mHallOfFame.toArray();
+        return Arrays.copyOf(all, Math.min(numTop, all.length));
+    }
+
+    /**
+     * Same as EvolveOptimalResistors.uniqueMostFitQueues(...) over every island.
+     */
+    public List<Queue<DNADecipherUnit>> uniqueMostFitQueues(int numTop) {
+        List<Queue<DNADecipherUnit>> queues = new ArrayList<>();
+        for(DNA one : mostFitDNA(numTop))
+            queues.add(EvolveOptimalResistors.RPNQueue(one, mAvailableResistors));
+        return queues;
+    }
+
+    public HallOfFame getHallOfFame() {
+        return mHallOfFame;
+    }
+
+    public int getNumIslands() {
+        return mIslands.length;
+    }
+
+    /**
+     * Why the last call to evolve() stopped the islands, one of the reasons in StoppingPolicy.
+     * StoppingPolicy.CONTINUE means every island ran out of generations or was stopped by its
+     * token on its own.
+     */
+    public int getStopReason() {
+        synchronized (mStopLock) {
+            return mStopReason;
+        }
+    }
+
+    /**
+     * Installed on every island. Checks the shared policy and, once it says stop, keeps saying so to
+     * every island.
+     */
+    private class SharedStop extends StoppingPolicy {
+        @Override
+        public int check(Generation generation) {
+            synchronized (mStopLock) {
+                if(mStopReason == CONTINUE)
+                    mStopReason = mStoppingPolicy.check(generation);
+                return mStopReason;
+            }
+        }
+    }
+
+    /**
+     * Runs on island k's thread after each of its generations is evaluated.
+     */
+    private class Migration implements EvolveOptimalResistors.GenerationHook {
+        private final int mIsland;
+
+        private Migration(int island) {
+            mIsland = island;
+        }
+
+        @Override
+        public void onEvaluated(EvolveOptimalResistors evolver, int generation, double[] allFitness) {
+            if(mIslands.length == 1 || mNumMigrants == 0 || (generation + 1) % mMigrationInterval != 0)
+                return;
+            int[] best = evolver.mostFitIndices(allFitness, mNumMigrants);
+            DNA[] migrants = new DNA[best.length];
+            for(int i = 0; i < migrants.length; i ++)
+                migrants[i] = evolver.getIndividual(best[i]);
+            // Replaces migrants the next island has not taken yet, since these are newer.
+            mMailboxes.set((mIsland + 1) % mIslands.length, migrants);
+            DNA[] immigrants = mMailboxes.getAndSet(mIsland, null);
+            if(immigrants != null)
+                evolver.replaceLeastFit(immigrants, allFitness);
+        }
+    }
+}
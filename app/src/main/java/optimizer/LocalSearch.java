@@ -0,0 +1,381 @@
+package optimizer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Hill climbs from a single circuit to a nearby more fit one. Evolution often ends with circuits
+ * one resistor swap away from a better answer, which crossover is slow to find.
+ *
+ * A circuit is refined by trying, one at a time:
+ *  - replacing a resistor by the closest unused resistance above or below it,
+ *  - flipping a connection between series and parallel,
+ *  - dropping a resistor.
+ * Every move that improves fitness is kept, until no move does or MAX_PASSES passes have been made.
+ *
+ * While refining, resistors are numbered by their position among the survivors and keep that
+ * number, so a move only changes a few entries instead of the whole order chromosome. The order is
+ * rewritten for the final circuit only, and its survivors are canonicalized like every other DNA
+ * (see DNA.canonicalizeSurvivors(...)) so FitnessCache and the structural hash treat it alike.
+ *
+ * Not thread safe; every thread refining circuits needs its own.
+ */
+class LocalSearch {
+    /**
+     * Most passes over all moves for one circuit.
+     */
+    private static final int MAX_PASSES = 16;
+
+    private final Resistor[] mAvailableResistors;
+    private final double mDesiredResistance;
+    private final int mSizePriority;
+    /**
+     * Indices of the available resistors sorted by resistance.
+     */
+    private final int[] mSorted;
+    /**
+     * Resistance of every resistor in mSorted, for binary searches.
+     */
+    private final double[] mSortedResistances;
+    /**
+     * Runs of equal resistors, from Inventory.findRuns(...).
+     */
+    private final int[] mRuns;
+    private final CollapseKernel mKernel;
+
+    /*
+    Circuit being refined. mLeaves[id] is the available resistor used by resistor id, or -1 once it
+    is dropped. Step s connects the group of resistor mGivers[s] into the group of mReceivers[s],
+    which then goes by mReceivers[s]. Dropped steps have a connection of -1.
+     */
+    private int[] mLeaves;
+    private int[] mReceivers;
+    private int[] mGivers;
+    private int[] mConnections;
+    private boolean[] mUsed;
+    private double[] mValues;
+
+    /**
+     * Constructor.
+     * @param availableResistors Available resistors the refined DNA are built over.
+     * @param desiredResistance Resistance to achieve.
+     * @param sizePriority Priority of small circuits over accurate ones, between [0, 100].
+     */
+    LocalSearch(Resistor[] availableResistors, double desiredResistance, int sizePriority) {
+        mAvailableResistors = availableResistors;
+        mDesiredResistance = desiredResistance;
+        mSizePriority = sizePriority;
+        int numAvailable = availableResistors.length;
+        Integer[] sorted = new Integer[numAvailable];
+        for(int i = 0; i < numAvailable; i ++)
+            sorted[i] = i;
+        // Usually already sorted (see Inventory.toResistors()), which makes this cheap. The sort is
+        // stable, so equal resistances stay in index order.
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(mAvailableResistors[a].getResistance(), mAvailableResistors[b].getResistance());
+            }
+        });
+        mSorted = new int[numAvailable];
+        mSortedResistances = new double[numAvailable];
+        for(int i = 0; i < numAvailable; i ++) {
+            mSorted[i] = sorted[i];
+            mSortedResistances[i] = availableResistors[sorted[i]].getResistance();
+        }
+        mRuns = Inventory.findRuns(availableResistors);
+        mKernel = new CollapseKernel(availableResistors);
+        mUsed = new boolean[numAvailable];
+    }
+
+    /**
+     * Refines an evaluated DNA.
+     * @param dna DNA whose fitness, total resistance and size are set.
+     * @return A new, evaluated DNA more fit than dna, or dna itself if no move improves it.
+     */
+    DNA refine(DNA dna) {
+        decode(dna);
+        double start = fitness();
+        double best = start;
+        for(int pass = 0; pass < MAX_PASSES; pass ++) {
+            double before = best;
+            best = replaceResistors(best);
+            best = flipConnections(best);
+            best = dropResistors(best);
+            if(best <= before)
+                break;
+        }
+        if(best <= start)
+            return dna;
+        return encode();
+    }
+
+    /*
+    Tries the closest unused resistance below and above every resistor.
+     */
+    private double replaceResistors(double best) {
+        for(int id = 0; id < mLeaves.length; id ++) {
+            int current = mLeaves[id];
+            if(current < 0)
+                continue;
+            for(int direction = -1; direction <= 1; direction += 2) {
+                int other = closestUnused(current, direction);
+                if(other < 0)
+                    continue;
+                mLeaves[id] = other;
+                double fitness = fitness();
+                if(fitness > best) {
+                    best = fitness;
+                    mUsed[current] = false;
+                    mUsed[other] = true;
+                    current = other;
+                } else {
+                    mLeaves[id] = current;
+                }
+            }
+        }
+        return best;
+    }
+
+    /*
+    Unused available resistor with the closest resistance different from current's, in the given
+    direction of resistance, or -1 if there is none. Runs of equal resistances are found by binary
+    search, and the first unused copy of a run is taken, like GreedySubcircuits does.
+     */
+    private int closestUnused(int current, int direction) {
+        double resistance = mAvailableResistors[current].getResistance();
+        int p = direction > 0 ? firstAbove(resistance) : firstAtLeast(resistance) - 1;
+        while(p >= 0 && p < mSorted.length) {
+            double other = mSortedResistances[p];
+            int start = firstAtLeast(other);
+            int end = firstAbove(other);
+            for(int q = start; q < end; q ++)
+                if(!mUsed[mSorted[q]])
+                    return mSorted[q];
+            // Every copy is used, so the next resistance over is tried.
+            p = direction > 0 ? end : start - 1;
+        }
+        return -1;
+    }
+
+    /*
+    First position in mSorted whose resistance is not below resistance.
+     */
+    private int firstAtLeast(double resistance) {
+        int start = 0, end = mSortedResistances.length;
+        while(start < end) {
+            int mid = (start + end) >>> 1;
+            if(mSortedResistances[mid] < resistance)
+                start = mid + 1;
+            else
+                end = mid;
+        }
+        return start;
+    }
+
+    /*
+    First position in mSorted whose resistance is above resistance.
+     */
+    private int firstAbove(double resistance) {
+        int start = 0, end = mSortedResistances.length;
+        while(start < end) {
+            int mid = (start + end) >>> 1;
+            if(mSortedResistances[mid] <= resistance)
+                start = mid + 1;
+            else
+                end = mid;
+        }
+        return start;
+    }
+
+    private double flipConnections(double best) {
+        for(int s = 0; s < mConnections.length; s ++) {
+            int connection = mConnections[s];
+            if(connection < 0)
+                continue;
+            mConnections[s] = connection == Resistor.SERIES ? Resistor.PARALLEL : Resistor.SERIES;
+            double fitness = fitness();
+            if(fitness > best)
+                best = fitness;
+            else
+                mConnections[s] = connection;
+        }
+        return best;
+    }
+
+    /*
+    Tries removing every resistor. A resistor is joined to the rest of the circuit by the first
+    step it takes part in; dropping it drops that step. If it received in that step, the group it
+    gave to carries on under the giver's id.
+     */
+    private double dropResistors(double best) {
+        for(int id = 0; id < mLeaves.length; id ++) {
+            if(mLeaves[id] < 0)
+                continue;
+            int first = -1;
+            for(int s = 0; s < mConnections.length && first < 0; s ++)
+                if(mConnections[s] >= 0 && (mReceivers[s] == id || mGivers[s] == id))
+                    first = s;
+            // A circuit of one resistor is kept.
+            if(first < 0)
+                continue;
+
+            int[] receivers = mReceivers.clone();
+            int[] givers = mGivers.clone();
+            int[] connections = mConnections.clone();
+            int leaf = mLeaves[id];
+            int partner = mReceivers[first] == id ? mGivers[first] : mReceivers[first];
+            mConnections[first] = -1;
+            for(int s = first + 1; s < mConnections.length; s ++) {
+                if(mReceivers[s] == id)
+                    mReceivers[s] = partner;
+                if(mGivers[s] == id)
+                    mGivers[s] = partner;
+            }
+            mLeaves[id] = -1;
+            double fitness = fitness();
+            if(fitness > best) {
+                best = fitness;
+                mUsed[leaf] = false;
+            } else {
+                mLeaves[id] = leaf;
+                mReceivers = receivers;
+                mGivers = givers;
+                mConnections = connections;
+            }
+        }
+        return best;
+    }
+
+    /*
+    Fitness of the circuit as it stands, the same as EvolveOptimalResistors gives it.
+     */
+    private double fitness() {
+        double[] values = mValues;
+        int size = 0;
+        int root = -1;
+        for(int id = 0; id < mLeaves.length; id ++) {
+            if(mLeaves[id] >= 0) {
+                values[id] = mAvailableResistors[mLeaves[id]].getResistance();
+                size ++;
+                root = id;
+            }
+        }
+        for(int s = 0; s < mConnections.length; s ++) {
+            int r = mReceivers[s];
+            if(mConnections[s] == Resistor.SERIES)
+                values[r] = Resistor.series(values[r], values[mGivers[s]]);
+            else if(mConnections[s] == Resistor.PARALLEL)
+                values[r] = Resistor.parallel(values[r], values[mGivers[s]]);
+            else
+                continue;
+            root = r;
+        }
+        return EvolveOptimalResistors.inverseWeightedSum(mDesiredResistance, mSizePriority, values[root], size);
+    }
+
+    /*
+    Numbers the survivors of dna by position and replays its order to find which resistors every
+    step connects.
+     */
+    private void decode(DNA dna) {
+        int numLeaves = dna.getNumSurvivors();
+        mLeaves = new int[numLeaves];
+        mValues = new double[numLeaves];
+        Arrays.fill(mUsed, false);
+        long[] survivors = dna.getSurvivers();
+        int id = 0;
+        for(int w = 0; w < survivors.length; w ++) {
+            long word = survivors[w];
+            while(word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                mLeaves[id ++] = index;
+                mUsed[index] = true;
+                word &= word - 1;
+            }
+        }
+
+        int[] receivers = dna.getReceivers();
+        int[] givers = dna.getGivers();
+        int numSteps = receivers.length;
+        mReceivers = new int[numSteps];
+        mGivers = new int[numSteps];
+        mConnections = dna.getConnections().clone();
+        int[] remaining = new int[numLeaves];
+        for(int i = 0; i < numLeaves; i ++)
+            remaining[i] = i;
+        int numRemaining = numLeaves;
+        for(int s = 0; s < numSteps; s ++) {
+            mReceivers[s] = remaining[receivers[s]];
+            mGivers[s] = remaining[givers[s]];
+            numRemaining = remove(remaining, numRemaining, givers[s]);
+        }
+    }
+
+    /*
+    Writes the refined circuit back into chromosomes and evaluates it.
+     */
+    private DNA encode() {
+        int numAvailable = mAvailableResistors.length;
+        long[] survivors = new long[DNA.numWords(numAvailable)];
+        int numLeaves = 0;
+        for(int leaf : mLeaves) {
+            if(leaf >= 0) {
+                survivors[leaf >>> 6] |= 1L << leaf;
+                numLeaves ++;
+            }
+        }
+        // Survivors are listed by index, so the chromosome refers to ids in that order.
+        int[] remaining = new int[numLeaves];
+        int numRemaining = 0;
+        for(int w = 0; w < survivors.length; w ++) {
+            long word = survivors[w];
+            while(word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                for(int id = 0; id < mLeaves.length; id ++)
+                    if(mLeaves[id] == index)
+                        remaining[numRemaining ++] = id;
+                word &= word - 1;
+            }
+        }
+
+        int[] receivers = new int[numLeaves - 1];
+        int[] givers = new int[numLeaves - 1];
+        int[] connections = new int[numLeaves - 1];
+        int step = 0;
+        for(int s = 0; s < mConnections.length; s ++) {
+            if(mConnections[s] < 0)
+                continue;
+            receivers[step] = indexOf(remaining, numRemaining, mReceivers[s]);
+            givers[step] = indexOf(remaining, numRemaining, mGivers[s]);
+            connections[step] = mConnections[s];
+            numRemaining = remove(remaining, numRemaining, givers[step]);
+            step ++;
+        }
+
+        DNA refined = new DNA(survivors, numAvailable, numLeaves, receivers, givers, connections);
+        // Copies of one resistance are interchangeable, so this leaves the circuit as it is.
+        refined.canonicalizeSurvivors(mRuns);
+        mKernel.collapse(refined.getSurvivers(), receivers, givers, connections);
+        refined.setTotalResistance(mKernel.getTotalResistance());
+        refined.setSize(mKernel.getSize());
+        refined.setFitness(EvolveOptimalResistors.inverseWeightedSum(mDesiredResistance, mSizePriority,
+                mKernel.getTotalResistance(), mKernel.getSize()));
+        return refined;
+    }
+
+    private static int indexOf(int[] values, int length, int value) {
+        for(int i = 0; i < length; i ++)
+            if(values[i] == value)
+                return i;
+        throw new ArithmeticException("Order refers to a resistor that is no longer in the circuit.");
+    }
+
+    /*
+    Removes values[index] by shifting the rest down. Returns the new length.
+     */
+    private static int remove(int[] values, int length, int index) {
+        System.arraycopy(values, index + 1, values, index, length - index - 1);
+        return length - 1;
+    }
+}
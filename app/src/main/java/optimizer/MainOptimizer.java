@@ -4,15 +4,31 @@ import java.util.*;
 
 public class MainOptimizer {
 
-    private static GreedySubcircuits genSubsDNA(double[] resistances, double desiredResistance) {
+    private static GreedySubcircuits genSubsDNA(double[] resistances, double desiredResistance, int popSize) {
+        return genSubsDNA(Inventory.fromResistances(resistances), desiredResistance, popSize);
+    }
+
+    private static GreedySubcircuits genSubsDNA(Inventory inventory, double desiredResistance, int popSize) {
         System.out.println("------------Start--------------");
-        GreedySubcircuits greedyAlgo = new GreedySubcircuits(resistances, desiredResistance, 40);
+        return genSubsDNA(new GreedySubcircuits(inventory, desiredResistance), popSize,
+                EvolveOptimalResistors.DEFAULT_PARALLELISM);
+    }
+
+    private static GreedySubcircuits genSubsDNA(GreedySubcircuits greedyAlgo, int popSize, int parallelism) {
         System.out.println("Generating subcircuits' DNA.");
-        greedyAlgo.generateDNA();
-        System.out.println("Subcircuits' DNA generated.");
+        greedyAlgo.generateDNA(seedBudget(popSize), parallelism);
+        System.out.println("Subcircuits' DNA generated: " + greedyAlgo.getDNA().length + ".");
         return greedyAlgo;
     }
 
+    /*
+    Seeds at most GreedySubcircuits.DEFAULT_SEED_PERCENT of the population, so the rest is left to
+    random DNA however large the inventory is.
+     */
+    private static int seedBudget(int popSize) {
+        return (int)((long) popSize * GreedySubcircuits.DEFAULT_SEED_PERCENT / 100);
+    }
+
     private static List<String> optimize(EvolveOptimalResistors geneticAlgo, int numTop) {
         System.out.println("Evolving resistors.");
         geneticAlgo.evolve();
@@ -23,7 +39,7 @@ public class MainOptimizer {
     }
 
     public static List<String> run(double[] resistances, double desiredResistance, int numTop) {
-        GreedySubcircuits greedyAlgo = genSubsDNA(resistances, desiredResistance);
+        GreedySubcircuits greedyAlgo = genSubsDNA(resistances, desiredResistance, EvolveOptimalResistors.DEFAULT_POP_SIZE);
         Resistor[] availableResistors = greedyAlgo.getFormattedResistances();
         DNA[] initialDNA = greedyAlgo.getDNA();
 //        Resistor[] noInitial = new Resistor[resistances.length];
@@ -34,7 +50,7 @@ public class MainOptimizer {
     }
 
     public static List<String> run(double[] resistances, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int numTop) {
-        GreedySubcircuits greedyAlgo = genSubsDNA(resistances, desiredResistance);
+        GreedySubcircuits greedyAlgo = genSubsDNA(resistances, desiredResistance, popSize);
         Resistor[] availableResistors = greedyAlgo.getFormattedResistances();
         DNA[] initialDNA = greedyAlgo.getDNA();
         EvolveOptimalResistors geneticAlgo = new EvolveOptimalResistors(availableResistors, desiredResistance, sizePriority,
@@ -54,11 +70,177 @@ public class MainOptimizer {
 
 
     public static List<Queue<DNADecipherUnit>> runAndGetQueues(double[] resistances, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int numTop) {
-        GreedySubcircuits greedyAlgo = genSubsDNA(resistances, desiredResistance);
+        return runAndGetQueues(resistances, desiredResistance, sizePriority, popSize, mutationRate, numGen,
+                EvolveOptimalResistors.DEFAULT_PARALLELISM, numTop);
+    }
+
+    /**
+     * Same as above, but parallelism sets the number of threads used to evaluate fitness and breed children.
+     */
+    public static List<Queue<DNADecipherUnit>> runAndGetQueues(double[] resistances, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int parallelism, int numTop) {
+        return runAndGetQueues(resistances, desiredResistance, sizePriority, popSize, mutationRate, numGen,
+                parallelism, new RandomStream(), numTop);
+    }
+
+    /**
+     * Same as above, but every random decision is drawn from random, so equally seeded streams
+     * reproduce the same result.
+     */
+    public static List<Queue<DNADecipherUnit>> runAndGetQueues(double[] resistances, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int parallelism, RandomStream random, int numTop) {
+        return runAndGetQueues(Inventory.fromResistances(resistances), desiredResistance, sizePriority, popSize,
+                mutationRate, numGen, parallelism, random, numTop);
+    }
+
+    /**
+     * Same as above, but the resistors are given as distinct resistances and their quantities, so
+     * large quantities of one resistance cost no more than a few.
+     */
+    public static List<Queue<DNADecipherUnit>> runAndGetQueues(Inventory inventory, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int numTop) {
+        return runAndGetQueues(inventory, desiredResistance, sizePriority, popSize, mutationRate, numGen,
+                EvolveOptimalResistors.DEFAULT_PARALLELISM, new RandomStream(), numTop);
+    }
+
+    /**
+     * Same as above, with the number of threads and the random stream chosen by the caller.
+     */
+    public static List<Queue<DNADecipherUnit>> runAndGetQueues(Inventory inventory, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int parallelism, RandomStream random, int numTop) {
+        GreedySubcircuits greedyAlgo = genSubsDNA(inventory, desiredResistance, popSize);
         Resistor[] availableResistors = greedyAlgo.getFormattedResistances();
         DNA[] initialDNA = greedyAlgo.getDNA();
         EvolveOptimalResistors geneticAlgo = new EvolveOptimalResistors(availableResistors, desiredResistance, sizePriority,
-                popSize, mutationRate, numGen, initialDNA);
+                popSize, mutationRate, numGen, parallelism, random, initialDNA);
         return optimizeAndGetQueues(geneticAlgo, numTop);
     }
+
+    /**
+     * Same as above, but the population is split into numIslands populations that evolve on their
+     * own threads and exchange their most fit DNA every few generations. See IslandOptimizer.
+     */
+    public static List<Queue<DNADecipherUnit>> runIslandsAndGetQueues(Inventory inventory, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int numIslands, RandomStream random, int numTop) {
+        GreedySubcircuits greedyAlgo = genSubsDNA(inventory, desiredResistance, popSize);
+        Resistor[] availableResistors = greedyAlgo.getFormattedResistances();
+        DNA[] initialDNA = greedyAlgo.getDNA();
+        IslandOptimizer islands = new IslandOptimizer(availableResistors, desiredResistance, sizePriority,
+                popSize, mutationRate, numGen, numIslands, random, initialDNA);
+        System.out.println("Evolving " + numIslands + " islands.");
+        islands.evolve();
+        System.out.println("Islands evolved.");
+        List<Queue<DNADecipherUnit>> queues = islands.uniqueMostFitQueues(numTop);
+        System.out.println("------------End--------------");
+        return queues;
+    }
+
+    /**
+     * Tries every series-parallel circuit of up to maxSize resistors instead of evolving, so the
+     * returned circuits are the most fit of that size or smaller. Only practical for small circuits.
+     * @param maxSize Most resistors in a circuit, between [1, SubnetworkTable.MAX_SIZE].
+     */
+    public static List<Queue<DNADecipherUnit>> solveExactly(Inventory inventory, double desiredResistance, int sizePriority, int maxSize, int numTop) {
+        System.out.println("------------Start--------------");
+        System.out.println("Enumerating circuits of up to " + maxSize + " resistors.");
+        ExactSolver solver = new ExactSolver(inventory, desiredResistance, sizePriority, maxSize);
+        List<Queue<DNADecipherUnit>> queues = solver.mostFitQueues(numTop);
+        System.out.println("------------End--------------");
+        return queues;
+    }
+
+    /**
+     * Same as runAndGetQueues(Inventory, ...), but first looks for the circuits in an index of the
+     * inventory. The genetic algorithm is skipped when the index proves that its most fit circuit
+     * cannot be beaten. Otherwise pairs of indexed circuits are combined, and the combined circuits
+     * seed the genetic algorithm and compete with its results.
+     * @param index Index of the inventory to search, reused between searches.
+     */
+    public static List<Queue<DNADecipherUnit>> runAndGetQueues(AchievableIndex index, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int numTop) {
+        return runAndGetQueues(index, desiredResistance, sizePriority, popSize, mutationRate, numGen, numTop, null);
+    }
+
+    /**
+     * Same as above, but listener is told about the most fit circuits found so far, first the
+     * combined circuits and then after every generation that improves on them.
+     * @param listener Listener called on the calling thread, or null for none.
+     */
+    public static List<Queue<DNADecipherUnit>> runAndGetQueues(AchievableIndex index, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int numTop, ProgressListener listener) {
+        return runAndGetQueues(index, desiredResistance, sizePriority, popSize, mutationRate, numGen, numTop, listener, null);
+    }
+
+    /**
+     * Same as above, but the search stops early once token fires and returns the most fit circuits
+     * found by then. numGen becomes the most generations evolved, so a token with a budget keeps
+     * the search within that budget on slow devices.
+     * @param token Token, or null to always run every generation.
+     */
+    public static List<Queue<DNADecipherUnit>> runAndGetQueues(AchievableIndex index, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int numTop, ProgressListener listener, CancellationToken token) {
+        System.out.println("------------Start--------------");
+        List<Queue<DNADecipherUnit>> queues = solve(index, desiredResistance, sizePriority, popSize, mutationRate, numGen,
+                EvolveOptimalResistors.DEFAULT_PARALLELISM, new RandomStream(), numTop, listener, token, true);
+        System.out.println("------------End--------------");
+        return queues;
+    }
+
+    /*
+    Body of the above, shared with BatchOptimizer. The greedy seeds and the genetic algorithm work
+    on the index's own resistors, so nothing about the inventory is rebuilt per search. Searches
+    running side by side pass verbose = false so their output does not interleave.
+     */
+    static List<Queue<DNADecipherUnit>> solve(AchievableIndex index, double desiredResistance, int sizePriority, int popSize, int mutationRate, int numGen, int parallelism, RandomStream random, int numTop, ProgressListener listener, CancellationToken token, boolean verbose) {
+        DNA[] indexed = index.mostFitDNA(desiredResistance, sizePriority, numTop);
+        if(indexed.length > 0 && index.isBestPossible(indexed[0], desiredResistance, sizePriority)) {
+            if(verbose)
+                System.out.println("Most fit circuit found in the index.");
+            return index.toQueues(indexed);
+        }
+
+        if(verbose)
+            System.out.println("Combining indexed circuits.");
+        DNA[] combined = new MeetInTheMiddleSolver(index).mostFitDNA(desiredResistance, sizePriority, numTop);
+        if(listener != null && combined.length > 0)
+            listener.onProgress(0, index.toQueues(combined));
+        if(token != null && token.isStopRequested()) {
+            if(verbose)
+                System.out.println("Stopped before evolving.");
+            return index.toQueues(combined);
+        }
+        Resistor[] availableResistors = index.getAvailableResistors();
+        if(verbose)
+            System.out.println("Generating subcircuits' DNA.");
+        GreedySubcircuits greedyAlgo = new GreedySubcircuits(availableResistors, desiredResistance);
+        greedyAlgo.generateDNA(seedBudget(popSize), parallelism);
+        DNA[] greedyDNA = greedyAlgo.getDNA();
+        if(verbose)
+            System.out.println("Subcircuits' DNA generated: " + greedyDNA.length + ".");
+        int numSeeds = Math.max(0, Math.min(combined.length, popSize - greedyDNA.length));
+        DNA[] initialDNA = Arrays.copyOf(greedyDNA, greedyDNA.length + numSeeds);
+        System.arraycopy(combined, 0, initialDNA, greedyDNA.length, numSeeds);
+        EvolveOptimalResistors geneticAlgo = new EvolveOptimalResistors(availableResistors, desiredResistance, sizePriority,
+                popSize, mutationRate, numGen, parallelism, random, initialDNA);
+        geneticAlgo.setProgressListener(listener, numTop);
+        geneticAlgo.setCancellationToken(token);
+        geneticAlgo.setVerbose(verbose);
+
+        if(verbose)
+            System.out.println("Evolving resistors.");
+        geneticAlgo.evolve();
+        if(verbose)
+            System.out.println("Resistors evolved.");
+        // Already includes the genetic algorithm's hall of fame.
+        List<DNA> candidates = geneticAlgo.uniqueMostFit(numTop);
+        Collections.addAll(candidates, combined);
+        return uniqueMostFitQueues(candidates, availableResistors, numTop);
+    }
+
+    /*
+    Same as EvolveOptimalResistors.uniqueMostFitQueues(...) for DNA from several engines.
+     */
+    private static List<Queue<DNADecipherUnit>> uniqueMostFitQueues(List<DNA> dna, Resistor[] availableResistors, int numTop) {
+        UniqueTopK top = new UniqueTopK(numTop, availableResistors);
+        for(DNA one : dna)
+            top.offer(one);
+        List<Queue<DNADecipherUnit>> queues = new ArrayList<>();
+        for(DNA one : top.toList()) {
+            one.setRank(queues.size() + 1);
+            queues.add(EvolveOptimalResistors.RPNQueue(one, availableResistors));
+        }
+        return queues;
+    }
 }
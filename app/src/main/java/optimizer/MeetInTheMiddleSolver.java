@@ -0,0 +1,129 @@
+package optimizer;
+
+/**
+ * Finds circuits of up to twice as many parts as an AchievableIndex holds by connecting two of
+ * its circuits in series or in parallel.
+ *
+ * For every circuit a, the partner b that brings a + b (series) or 1/(1/a + 1/b) (parallel)
+ * nearest to the desired resistance only moves one way as a grows, so each pair of circuit sizes
+ * is swept once with two pointers over the sorted resistances. Partners that would need more of a
+ * resistor than the inventory holds are skipped in favour of the next nearest ones.
+ *
+ * Circuits are therefore limited to twice AchievableIndex.getMaxParts() parts. The index keeps 3
+ * parts per circuit only up to 32 distinct resistances and 2 parts up to 256 (see
+ * AchievableIndex.maxParts(...)), so realistic inventories reach 4 to 6 parts, not more. Larger circuits are left to the genetic algorithm,
+ * since halves of 4 parts would take far more memory than a phone can spare.
+ */
+public class MeetInTheMiddleSolver {
+    /**
+     * Most partners tried for one circuit when the nearest ones share too many resistors with it.
+     */
+    private static final int MAX_PARTNERS = 16;
+
+    private final AchievableIndex mIndex;
+
+    /**
+     * Constructor.
+     * @param index Index of the inventory, which is reused as the table of sub-networks.
+     */
+    public MeetInTheMiddleSolver(AchievableIndex index) {
+        mIndex = index;
+    }
+
+    /**
+     * Finds the most fit circuits that are one indexed circuit or two connected together, under
+     * the same fitness as EvolveOptimalResistors. Structurally identical circuits are only returned
+     * once.
+     * @param target Desired resistance.
+     * @param sizePriority Priority of small circuits over accurate ones, between [0, 100].
+     * @param numTop Number of circuits to return.
+     * @return DNA over the index's available resistors, most fit first, with fitness, total
+     *         resistance, size and rank set.
+     */
+    public DNA[] mostFitDNA(double target, int sizePriority, int numTop) {
+        if(target <= 0)
+            throw new IllegalArgumentException("Desired resistance must be a positive number.");
+        TopCircuits top = new TopCircuits(numTop, mIndex.getTable());
+        int maxParts = mIndex.getMaxParts();
+        for(int n = 1; n <= maxParts; n ++) {
+            double[] resistances = mIndex.getSortedResistances(n);
+            int[] entries = mIndex.getSortedEntries(n);
+            for(int i = 0; i < resistances.length; i ++)
+                top.offer(fitness(target, sizePriority, resistances[i], n), resistances[i], n, entries[i], -1, -1);
+        }
+        for(int leftParts = 1; leftParts <= maxParts; leftParts ++) {
+            for(int rightParts = leftParts; rightParts <= maxParts; rightParts ++) {
+                sweep(target, sizePriority, leftParts, rightParts, Resistor.SERIES, top);
+                sweep(target, sizePriority, leftParts, rightParts, Resistor.PARALLEL, top);
+            }
+        }
+        return top.toDNA();
+    }
+
+    /**
+     * Connects every circuit of leftParts parts to its nearest partners of rightParts parts.
+     */
+    private void sweep(double target, int sizePriority, int leftParts, int rightParts, int connection, TopCircuits top) {
+        int size = leftParts + rightParts;
+        // Even an exact match of this size cannot make it into the top.
+        if(fitness(target, sizePriority, target, size) <= top.threshold())
+            return;
+
+        SubnetworkTable table = mIndex.getTable();
+        double[] lefts = mIndex.getSortedResistances(leftParts);
+        int[] leftEntries = mIndex.getSortedEntries(leftParts);
+        double[] rights = mIndex.getSortedResistances(rightParts);
+        int[] rightEntries = mIndex.getSortedEntries(rightParts);
+
+        // First partner whose resistance is not below the ideal one. Only moves down as a grows.
+        int split = rights.length;
+        for(int i = 0; i < lefts.length; i ++) {
+            double a = lefts[i];
+            double ideal = idealPartner(a, target, connection);
+            while(split > 0 && rights[split - 1] >= ideal)
+                split --;
+
+            long leftResistors = table.getParts(leftEntries[i]);
+            int below = split - 1;
+            int above = split;
+            for(int tries = 0; tries < MAX_PARTNERS && (below >= 0 || above < rights.length); tries ++) {
+                // The total only moves away from target as the partner moves away from the ideal.
+                double belowTotal = below >= 0 ? combine(a, rights[below], connection) : Double.NaN;
+                double aboveTotal = above < rights.length ? combine(a, rights[above], connection) : Double.NaN;
+                int partner;
+                double total;
+                if(above >= rights.length || (below >= 0 && Math.abs(belowTotal - target) <= Math.abs(aboveTotal - target))) {
+                    partner = below--;
+                    total = belowTotal;
+                } else {
+                    partner = above++;
+                    total = aboveTotal;
+                }
+                double fitness = fitness(target, sizePriority, total, size);
+                if(fitness <= top.threshold())
+                    break;
+                int rightEntry = rightEntries[partner];
+                if(table.canCombine(leftResistors, table.getParts(rightEntry)))
+                    top.offer(fitness, total, size, leftEntries[i], rightEntry, connection);
+            }
+        }
+    }
+
+    /**
+     * Partner resistance that would bring a exactly to target.
+     */
+    private static double idealPartner(double a, double target, int connection) {
+        if(connection == Resistor.SERIES)
+            return target - a;
+        // 1/a + 1/b = 1/target has no positive b when a is already at or below target.
+        return a > target ? a * target / (a - target) : Double.POSITIVE_INFINITY;
+    }
+
+    private static double combine(double a, double b, int connection) {
+        return connection == Resistor.SERIES ? Resistor.series(a, b) : Resistor.parallel(a, b);
+    }
+
+    private static double fitness(double target, int sizePriority, double resistance, int size) {
+        return EvolveOptimalResistors.inverseWeightedSum(target, sizePriority, resistance, size);
+    }
+}
@@ -0,0 +1,299 @@
+package optimizer;
+
+import java.util.Arrays;
+
+/**
+ * Stores a whole generation of DNA in a few large primitive arrays instead of one DNA Object
+ * (plus its chromosomes) per individual.
+ *
+ * The survivors of individual i are packed 64 to a long and stored at [i * words, (i + 1) * words),
+ * where words is DNA.numWords(numAvailable). The order chromosome of individual i is stored at
+ * [getOrderOffset(i), getOrderOffset(i + 1)) of the receiver, giver and connection arrays. Two
+ * populations are meant to be used as a double buffer: children are bred from one into the other,
+ * then the two are swapped, so the arrays are reused every generation.
+ *
+ * Breeding happens in two phases so that slices of children can be bred on different threads.
+ * First breedSurvivors(...) is called for every child, then layoutOrders() places the order
+ * chromosomes, then breedOrder(...) is called for every child. Calls within a phase for different
+ * children may run concurrently.
+ */
+public class PackedPopulation {
+    /**
+     * Number of individuals.
+     */
+    private final int mPopSize;
+    /**
+     * Number of available resistors, which is the length of every survivors gene.
+     */
+    private final int mNumAvailable;
+    /**
+     * Number of longs in every survivors gene.
+     */
+    private final int mWords;
+    /**
+     * Runs of equal resistors, see Inventory.findRuns(...).
+     */
+    private final int[] mRuns;
+    /**
+     * Survivors of every individual.
+     */
+    private final long[] mSurvivors;
+    /**
+     * Number of survivors of every individual.
+     */
+    private final int[] mNumSurvivors;
+    /**
+     * Start of every individual's order chromosome. Has one extra entry marking the end of the last one.
+     */
+    private final int[] mOrderOffsets;
+    /**
+     * Parents of every child between the breeding phases.
+     */
+    private final int[] mMoms;
+    private final int[] mDads;
+    /**
+     * Order chromosomes of every individual.
+     */
+    private int[] mReceivers;
+    private int[] mGivers;
+    private int[] mConnections;
+    /**
+     * Results of the last fitness evaluation.
+     */
+    private final double[] mFitness;
+    private final double[] mTotalResistances;
+    private final int[] mSizes;
+
+    /**
+     * Constructor.
+     * @param popSize Number of individuals.
+     * @param numAvailable Number of available resistors.
+     */
+    public PackedPopulation(int popSize, int numAvailable) {
+        this(popSize, numAvailable, new int[0]);
+    }
+
+    /**
+     * Same as above, but bred survivors are kept at the start of every run of equal resistors.
+     * @param runs Runs from Inventory.findRuns(...).
+     */
+    public PackedPopulation(int popSize, int numAvailable, int[] runs) {
+        mPopSize = popSize;
+        mNumAvailable = numAvailable;
+        mWords = DNA.numWords(numAvailable);
+        mRuns = runs;
+        mSurvivors = new long[popSize * mWords];
+        mNumSurvivors = new int[popSize];
+        mOrderOffsets = new int[popSize + 1];
+        mMoms = new int[popSize];
+        mDads = new int[popSize];
+        // Grown by fill(...) and layoutOrders() to what the DNA actually need.
+        mReceivers = new int[popSize];
+        mGivers = new int[popSize];
+        mConnections = new int[popSize];
+        mFitness = new double[popSize];
+        mTotalResistances = new double[popSize];
+        mSizes = new int[popSize];
+    }
+
+    /**
+     * Copies an array of DNA into this population.
+     * @param pop DNA to copy. Must have the same length as this population.
+     */
+    public void fill(DNA[] pop) {
+        if(pop.length != mPopSize)
+            throw new IllegalArgumentException("Population size does not match.");
+        int orderLength = 0;
+        for(DNA one : pop)
+            orderLength += one.getReceivers().length;
+        ensureOrderCapacity(orderLength);
+        for(int i = 0; i < mPopSize; i ++) {
+            DNA one = pop[i];
+            if(one.getNumAvailable() != mNumAvailable)
+                throw new IllegalArgumentException("DNA was built for a different number of available resistors.");
+            System.arraycopy(one.getSurvivers(), 0, mSurvivors, i * mWords, mWords);
+
+            int[] receivers = one.getReceivers();
+            int length = receivers.length;
+            int offset = mOrderOffsets[i];
+            System.arraycopy(receivers, 0, mReceivers, offset, length);
+            System.arraycopy(one.getGivers(), 0, mGivers, offset, length);
+            System.arraycopy(one.getConnections(), 0, mConnections, offset, length);
+            mNumSurvivors[i] = length + 1;
+            mOrderOffsets[i + 1] = offset + length;
+        }
+    }
+
+    /**
+     * First breeding phase: crosses the survivors of two individuals of parents into child.
+     * @param child Index of the child in this population.
+     * @param parents Population holding the parents.
+     * @param mom Index of the first parent.
+     * @param dad Index of the second parent.
+     * @param mutation Rate of mutations.
+     * @param random Random stream.
+     */
+    public void breedSurvivors(int child, PackedPopulation parents, int mom, int dad, double mutation, RandomStream random) {
+        mutation = mutation/100;
+        int words = mWords;
+        int childOffset = child * words;
+        int numSurvivors = DNA.crossoverSurvivors(parents.mSurvivors, mom * words, parents.mSurvivors, dad * words,
+                mSurvivors, childOffset, mNumAvailable, mutation, random);
+        if(numSurvivors == 0) {
+            // Cannot have DNA with no survivors.
+            int source = random.nextBoolean() ? mom : dad;
+            System.arraycopy(parents.mSurvivors, source * words, mSurvivors, childOffset, words);
+            numSurvivors = parents.mNumSurvivors[source];
+        } else {
+            DNA.canonicalizeRuns(mSurvivors, childOffset, mRuns);
+        }
+        mNumSurvivors[child] = numSurvivors;
+        mMoms[child] = mom;
+        mDads[child] = dad;
+    }
+
+    /**
+     * Same as breedSurvivors(...), but child becomes an unchanged copy of one parent. Its order
+     * chromosome is copied in the third phase.
+     * @param child Index of the child in this population.
+     * @param parents Population holding the parent.
+     * @param parent Index of the parent.
+     */
+    public void cloneSurvivors(int child, PackedPopulation parents, int parent) {
+        System.arraycopy(parents.mSurvivors, parent * mWords, mSurvivors, child * mWords, mWords);
+        mNumSurvivors[child] = parents.mNumSurvivors[parent];
+        mMoms[child] = parent;
+        // Marks the child as a copy for breedOrder(...).
+        mDads[child] = -1;
+    }
+
+    /**
+     * Second breeding phase: places every child's order chromosome now that the number of
+     * survivors of every child is known.
+     */
+    public void layoutOrders() {
+        for(int i = 0; i < mPopSize; i ++)
+            mOrderOffsets[i + 1] = mOrderOffsets[i] + mNumSurvivors[i] - 1;
+        ensureOrderCapacity(mOrderOffsets[mPopSize]);
+    }
+
+    /**
+     * Third breeding phase: crosses the order chromosomes of the parents given to breedSurvivors(...),
+     * or copies the order chromosome of the parent given to cloneSurvivors(...).
+     * @param child Index of the child in this population.
+     * @param parents Population holding the parents.
+     * @param mutation Rate of mutations.
+     * @param random Random stream.
+     */
+    public void breedOrder(int child, PackedPopulation parents, double mutation, RandomStream random) {
+        mutation = mutation/100;
+        int mom = mMoms[child];
+        int dad = mDads[child];
+        if(dad < 0) {
+            int from = parents.mOrderOffsets[mom];
+            int to = mOrderOffsets[child];
+            int length = mNumSurvivors[child] - 1;
+            System.arraycopy(parents.mReceivers, from, mReceivers, to, length);
+            System.arraycopy(parents.mGivers, from, mGivers, to, length);
+            System.arraycopy(parents.mConnections, from, mConnections, to, length);
+            return;
+        }
+        DNA.crossoverOrders(parents.mReceivers, parents.mGivers, parents.mConnections,
+                parents.mOrderOffsets[mom], parents.getOrderLength(mom),
+                parents.mReceivers, parents.mGivers, parents.mConnections,
+                parents.mOrderOffsets[dad], parents.getOrderLength(dad),
+                mReceivers, mGivers, mConnections, mOrderOffsets[child], mNumSurvivors[child], mutation, random);
+    }
+
+    /**
+     * Collapses an individual with the kernel. Results are read from the kernel.
+     * @param i Index of the individual.
+     * @param kernel Kernel to collapse with.
+     */
+    public void collapse(int i, CollapseKernel kernel) {
+        kernel.collapse(mSurvivors, i * mWords, mWords,
+                mReceivers, mGivers, mConnections, mOrderOffsets[i], getOrderLength(i));
+    }
+
+    /**
+     * Hash of an individual's genome for a FitnessCache.
+     * @param i Index of the individual.
+     */
+    long genomeHash(int i) {
+        return FitnessCache.genomeHash(mSurvivors, i * mWords, mWords,
+                mReceivers, mGivers, mConnections, mOrderOffsets[i], getOrderLength(i));
+    }
+
+    /**
+     * Stores the result of a fitness evaluation.
+     */
+    public void setResult(int i, double fitness, double totalResistance, int size) {
+        mFitness[i] = fitness;
+        mTotalResistances[i] = totalResistance;
+        mSizes[i] = size;
+    }
+
+    /**
+     * Copies an individual back into a DNA Object.
+     * @param i Index of the individual.
+     * @return DNA with the individual's chromosomes and last fitness results.
+     */
+    public DNA toDNA(int i) {
+        int survivorsStart = i * mWords;
+        int orderStart = mOrderOffsets[i];
+        int orderEnd = mOrderOffsets[i + 1];
+        DNA dna = new DNA(Arrays.copyOfRange(mSurvivors, survivorsStart, survivorsStart + mWords),
+                mNumAvailable, mNumSurvivors[i],
+                Arrays.copyOfRange(mReceivers, orderStart, orderEnd),
+                Arrays.copyOfRange(mGivers, orderStart, orderEnd),
+                Arrays.copyOfRange(mConnections, orderStart, orderEnd));
+        dna.setFitness(mFitness[i]);
+        dna.setTotalResistance(mTotalResistances[i]);
+        dna.setSize(mSizes[i]);
+        return dna;
+    }
+
+    /**
+     * Copies every individual back into DNA Objects.
+     * @return Array of DNA.
+     */
+    public DNA[] toDNA() {
+        DNA[] pop = new DNA[mPopSize];
+        for(int i = 0; i < mPopSize; i ++)
+            pop[i] = toDNA(i);
+        return pop;
+    }
+
+    public int getOrderOffset(int i) {
+        return mOrderOffsets[i];
+    }
+
+    public int getOrderLength(int i) {
+        return mOrderOffsets[i + 1] - mOrderOffsets[i];
+    }
+
+    public int getNumSurvivors(int i) {
+        return mNumSurvivors[i];
+    }
+
+    public double getTotalResistance(int i) {
+        return mTotalResistances[i];
+    }
+
+    public int getSize(int i) {
+        return mSizes[i];
+    }
+
+    public int size() {
+        return mPopSize;
+    }
+
+    private void ensureOrderCapacity(int capacity) {
+        if(mReceivers.length < capacity) {
+            int newCapacity = Math.max(capacity, mReceivers.length * 2);
+            mReceivers = Arrays.copyOf(mReceivers, newCapacity);
+            mGivers = Arrays.copyOf(mGivers, newCapacity);
+            mConnections = Arrays.copyOf(mConnections, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package optimizer;
+
+/**
+ * Chooses the parents of the next generation in proportion to their fitness. When no DNA has any
+ * fitness, every DNA is equally likely.
+ *
+ * prepare(...) is called once per generation. After that, select(...) may be called from several
+ * threads at once as long as every thread passes its own random stream.
+ */
+public abstract class ParentSelector {
+    /**
+     * Cumulative fitness array searched with a binary search. O(log P) per parent.
+     */
+    public static final int ROULETTE = 0;
+    /**
+     * Vose's alias method. O(P) to prepare and O(1) per parent.
+     */
+    public static final int ALIAS = 1;
+    /**
+     * Stochastic universal sampling: every parent of the generation is chosen with evenly spaced
+     * pointers from one random offset, then shuffled. O(P) per generation and less spread in how
+     * often each DNA is chosen than independent draws.
+     */
+    public static final int STOCHASTIC_UNIVERSAL = 2;
+
+    /**
+     * Creates a selector.
+     * @param strategy ROULETTE, ALIAS or STOCHASTIC_UNIVERSAL.
+     * @return New selector.
+     */
+    public static ParentSelector create(int strategy) {
+        switch (strategy) {
+            case ROULETTE:
+                return new RouletteSelector();
+            case ALIAS:
+                return new AliasSelector();
+            case STOCHASTIC_UNIVERSAL:
+                return new StochasticUniversalSelector();
+            default:
+                throw new IllegalArgumentException("Unknown selection strategy: " + strategy);
+        }
+    }
+
+    /**
+     * Prepares to select parents for one generation.
+     * @param allFitness Fitness of every DNA.
+     * @param totalFitness Sum of allFitness.
+     * @param numDraws Number of parents that will be selected this generation.
+     * @param random Random stream for any randomness needed while preparing.
+     */
+    public abstract void prepare(double[] allFitness, double totalFitness, int numDraws, RandomStream random);
+
+    /**
+     * Selects a parent.
+     * @param draw Which of the numDraws parents is being selected, between [0, numDraws).
+     * @param random Random stream owned by the calling thread.
+     * @return Index of the parent.
+     */
+    public abstract int select(int draw, RandomStream random);
+
+    private static class RouletteSelector extends ParentSelector {
+        private double[] mCumFitness = new double[0];
+
+        @Override
+        public void prepare(double[] allFitness, double totalFitness, int numDraws, RandomStream random) {
+            int size = allFitness.length;
+            if(mCumFitness.length != size)
+                mCumFitness = new double[size];
+            boolean uniform = !(totalFitness > 0);
+            double sum = 0;
+            for(int i = 0; i < size; i ++) {
+                sum += uniform ? 1.0 / size : (allFitness[i]/totalFitness);
+                mCumFitness[i] = sum;
+            }
+        }
+
+        @Override
+        public int select(int draw, RandomStream random) {
+            return EvolveOptimalResistors.getFirstGreaterOrEqual(mCumFitness, random.nextDouble());
+        }
+    }
+
+    private static class AliasSelector extends ParentSelector {
+        /**
+         * Chance of keeping column i instead of taking its alias.
+         */
+        private double[] mProbability = new double[0];
+        private int[] mAlias = new int[0];
+        /**
+         * Work lists of columns below and above the average.
+         */
+        private int[] mSmall = new int[0];
+        private int[] mLarge = new int[0];
+
+        @Override
+        public void prepare(double[] allFitness, double totalFitness, int numDraws, RandomStream random) {
+            int size = allFitness.length;
+            if(mProbability.length != size) {
+                mProbability = new double[size];
+                mAlias = new int[size];
+                mSmall = new int[size];
+                mLarge = new int[size];
+            }
+            double[] probability = mProbability;
+            int[] alias = mAlias;
+            boolean uniform = !(totalFitness > 0);
+            int numSmall = 0, numLarge = 0;
+            for(int i = 0; i < size; i ++) {
+                // Scaled so the average column is exactly 1.
+                probability[i] = uniform ? 1 : allFitness[i] * size / totalFitness;
+                alias[i] = i;
+                if(probability[i] < 1)
+                    mSmall[numSmall++] = i;
+                else
+                    mLarge[numLarge++] = i;
+            }
+            while(numSmall > 0 && numLarge > 0) {
+                int small = mSmall[--numSmall];
+                int large = mLarge[--numLarge];
+                alias[small] = large;
+                probability[large] = (probability[large] + probability[small]) - 1;
+                if(probability[large] < 1)
+                    mSmall[numSmall++] = large;
+                else
+                    mLarge[numLarge++] = large;
+            }
+            // Whatever is left is only off from 1 because of rounding.
+            while(numLarge > 0)
+                probability[mLarge[--numLarge]] = 1;
+            while(numSmall > 0)
+                probability[mSmall[--numSmall]] = 1;
+        }
+
+        @Override
+        public int select(int draw, RandomStream random) {
+            int column = random.nextInt(mProbability.length);
+            return random.nextDouble() < mProbability[column] ? column : mAlias[column];
+        }
+    }
+
+    private static class StochasticUniversalSelector extends ParentSelector {
+        /**
+         * Parent chosen for every draw of the generation.
+         */
+        private int[] mParents = new int[0];
+
+        @Override
+        public void prepare(double[] allFitness, double totalFitness, int numDraws, RandomStream random) {
+            if(mParents.length != numDraws)
+                mParents = new int[numDraws];
+            int[] parents = mParents;
+            int size = allFitness.length;
+            // Without any fitness every DNA counts as 1.
+            boolean uniform = !(totalFitness > 0);
+
+            double spacing = (uniform ? size : totalFitness) / numDraws;
+            double pointer = random.nextDouble() * spacing;
+            double cumFitness = uniform ? 1 : allFitness[0];
+            int index = 0;
+            for(int draw = 0; draw < numDraws; draw ++) {
+                while(cumFitness < pointer && index < size - 1) {
+                    index ++;
+                    cumFitness += uniform ? 1 : allFitness[index];
+                }
+                parents[draw] = index;
+                pointer += spacing;
+            }
+
+            // Parents were chosen in population order, so shuffle them before they are paired.
+            for(int i = numDraws - 1; i > 0; i --) {
+                int j = random.nextInt(i + 1);
+                int temp = parents[i];
+                parents[i] = parents[j];
+                parents[j] = temp;
+            }
+        }
+
+        @Override
+        public int select(int draw, RandomStream random) {
+            return mParents[draw];
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package optimizer;
+
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Receives the most fit circuits found so far while a search is still running, so callers can show
+ * good circuits long before the last generation and stop waiting once one is good enough.
+ */
+public interface ProgressListener {
+    /**
+     * Called on the searching thread whenever the most fit circuits found so far improve. The
+     * circuits are never worse than the ones from the previous call.
+     * @param generation Generations evolved so far. 0 for circuits found before evolving.
+     * @param mostFit RPN queues like EvolveOptimalResistors.uniqueMostFitQueues(...), most fit
+     *                first. The caller owns them.
+     */
+    void onProgress(int generation, List<Queue<DNADecipherUnit>> mostFit);
+}
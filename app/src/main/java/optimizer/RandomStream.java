@@ -0,0 +1,124 @@
+package optimizer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unsynchronized, seedable and splittable random number generator (SplitMix64).
+ *
+ * A stream must only be used by one thread at a time. Threads that need randomness get their own
+ * stream through split(), so they never contend on a shared seed like Math.random() does, and a
+ * whole optimization run can be reproduced from the seed of its first stream.
+ */
+public class RandomStream {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+    /**
+     * Seeds handed out to streams created without an explicit seed.
+     */
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(System.nanoTime());
+
+    private long mSeed;
+    private long mGamma;
+
+    /**
+     * Constructor for a stream that differs from run to run.
+     */
+    public RandomStream() {
+        this(mix64(SEED_UNIQUIFIER.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime()));
+    }
+
+    /**
+     * Constructor for a reproducible stream.
+     * @param seed Seed. Equal seeds produce equal sequences.
+     */
+    public RandomStream(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private RandomStream(long seed, long gamma) {
+        mSeed = seed;
+        mGamma = gamma;
+    }
+
+    /**
+     * Creates a new stream that is statistically independent of this one. Splitting consumes
+     * values from this stream, so splits made in the same order are reproducible.
+     * @return New stream.
+     */
+    public RandomStream split() {
+        return new RandomStream(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Restarts this stream as stream number index of the family named by base. Work handed out to
+     * threads draws the same numbers for the same index however it is split, and restarting
+     * allocates nothing, unlike split().
+     * @param base Family, usually a value drawn once from another stream.
+     * @param index Index of the stream within the family.
+     */
+    void restart(long base, long index) {
+        mSeed = mix64(base + index * GOLDEN_GAMMA);
+        mGamma = GOLDEN_GAMMA;
+    }
+
+    /**
+     * Uniformly random long.
+     * @return Random long.
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * Uniformly random double between [0, 1).
+     * @return Random double.
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Uniformly random int between [0, bound).
+     * @param bound Exclusive upper bound. Must be positive.
+     * @return Random int.
+     */
+    public int nextInt(int bound) {
+        if(bound <= 0)
+            throw new IllegalArgumentException("Bound must be a positive number.");
+        int r = (int)(nextLong() >>> 33);
+        int m = bound - 1;
+        if((bound & m) == 0)
+            // Power of two.
+            return (int)((bound * (long)r) >> 31);
+        // Rejects values that would make some results more likely than others.
+        for(int u = r; u - (r = u % bound) + m < 0; u = (int)(nextLong() >>> 33));
+        return r;
+    }
+
+    /**
+     * Fair coin flip.
+     * @return Random boolean.
+     */
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    private long nextSeed() {
+        return mSeed += mGamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        // Gammas with too few bit flips produce poorly mixed streams.
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
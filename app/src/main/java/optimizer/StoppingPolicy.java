@@ -0,0 +1,364 @@
+package optimizer;
+
+/**
+ * Decides when evolve() stops before its last generation, so generations are only spent while
+ * they still improve the answer.
+ *
+ * check(...) is called once per generation after its fitness is evaluated, on the thread running
+ * evolve(). A policy may keep state between generations; reset() is called when evolve() starts.
+ */
+public abstract class StoppingPolicy {
+    /**
+     * Returned by check(...) to keep evolving.
+     */
+    public static final int CONTINUE = 0;
+    /**
+     * Every generation ran.
+     */
+    public static final int MAX_GENERATIONS = 1;
+    /**
+     * The CancellationToken was cancelled or ran out of budget.
+     */
+    public static final int STOP_REQUESTED = 2;
+    /**
+     * The total fitness of the population dropped from the previous generation.
+     */
+    public static final int TOTAL_FITNESS_DROP = 3;
+    /**
+     * The most fit circuit stopped improving.
+     */
+    public static final int STAGNATION = 4;
+    /**
+     * The most fit circuit matches the desired resistance exactly with as few resistors as any
+     * exact match can have.
+     */
+    public static final int EXACT_MATCH = 5;
+    /**
+     * Too few distinct circuits are left in the population for crossover to find new ones.
+     */
+    public static final int DIVERSITY_COLLAPSE = 6;
+    /**
+     * The most fit circuit is within the requested error of the desired resistance.
+     */
+    public static final int ERROR_THRESHOLD = 7;
+
+    /**
+     * Relative difference below which a resistance counts as an exact match. Series and parallel
+     * resistances are rounded, so exact matches are rarely bit for bit equal.
+     */
+    private static final double EXACT_TOLERANCE = 1e-9;
+
+    /**
+     * Same as anyOf(...) with exactMatch(), stagnation(5) and diversityCollapse(0.02).
+     */
+    public static StoppingPolicy createDefault() {
+        return anyOf(exactMatch(), stagnation(5), diversityCollapse(0.02));
+    }
+
+    /**
+     * Stops as soon as the total fitness of the population drops. Very aggressive; this was the
+     * only way evolve() used to stop early.
+     */
+    public static StoppingPolicy totalFitnessDrop() {
+        return new TotalFitnessDropPolicy();
+    }
+
+    /**
+     * Stops once the most fit circuit has not improved for window generations in a row.
+     * @param window Number of generations without improvement, at least 1.
+     */
+    public static StoppingPolicy stagnation(int window) {
+        if(window < 1)
+            throw new IllegalArgumentException("Window must be a positive number.");
+        return new StagnationPolicy(window);
+    }
+
+    /**
+     * Stops once the most fit circuit matches the desired resistance exactly and no exact match can
+     * have fewer resistors. Exact matches of 1 and 2 resistors are looked for in the available
+     * resistors, so only 3 or more resistors need an exact match to be proven minimal.
+     */
+    public static StoppingPolicy exactMatch() {
+        return new ExactMatchPolicy();
+    }
+
+    /**
+     * Stops once the fraction of distinct circuits in the population falls below minFraction.
+     * Circuits with the same total resistance and size count as one.
+     * @param minFraction Fraction between [0, 1].
+     */
+    public static StoppingPolicy diversityCollapse(double minFraction) {
+        if(minFraction < 0 || minFraction > 1)
+            throw new IllegalArgumentException("Fraction must be between [0, 1].");
+        return new DiversityCollapsePolicy(minFraction);
+    }
+
+    /**
+     * Stops once the most fit circuit is within maxRelativeError of the desired resistance.
+     * @param maxRelativeError Most |total - desired| / desired allowed, at least 0.
+     */
+    public static StoppingPolicy errorThreshold(double maxRelativeError) {
+        if(maxRelativeError < 0)
+            throw new IllegalArgumentException("Error must be >= 0.");
+        return new ErrorThresholdPolicy(maxRelativeError);
+    }
+
+    /**
+     * Stops when any of the policies does, with the reason of the first one that does.
+     */
+    public static StoppingPolicy anyOf(StoppingPolicy... policies) {
+        return new AnyOfPolicy(policies);
+    }
+
+    /**
+     * Name of a reason for logs.
+     */
+    public static String reasonName(int reason) {
+        switch (reason) {
+            case CONTINUE:
+                return "continue";
+            case MAX_GENERATIONS:
+                return "max generations";
+            case STOP_REQUESTED:
+                return "stop requested";
+            case TOTAL_FITNESS_DROP:
+                return "total fitness drop";
+            case STAGNATION:
+                return "stagnation";
+            case EXACT_MATCH:
+                return "exact match";
+            case DIVERSITY_COLLAPSE:
+                return "diversity collapse";
+            case ERROR_THRESHOLD:
+                return "error threshold";
+            default:
+                return "unknown (" + reason + ")";
+        }
+    }
+
+    /**
+     * Forgets everything seen by an earlier run.
+     */
+    public void reset() {
+    }
+
+    /**
+     * Looks at a generation that was just evaluated.
+     * @param generation Summary of the generation.
+     * @return CONTINUE, or the reason to stop.
+     */
+    public abstract int check(Generation generation);
+
+    /**
+     * What a policy can look at for one evaluated generation. Expensive values are only computed
+     * when asked for.
+     */
+    public static class Generation {
+        private final EvolveOptimalResistors mEvolver;
+        private final int mIndex;
+        private final double mTotalFitness;
+        private final double mBestFitness;
+        private final double mBestTotalResistance;
+        private final int mBestSize;
+        private double mDiversity = -1;
+
+        Generation(EvolveOptimalResistors evolver, int index, double totalFitness, double bestFitness,
+                   double bestTotalResistance, int bestSize) {
+            mEvolver = evolver;
+            mIndex = index;
+            mTotalFitness = totalFitness;
+            mBestFitness = bestFitness;
+            mBestTotalResistance = bestTotalResistance;
+            mBestSize = bestSize;
+        }
+
+        /**
+         * Number of generations bred before this one, so 0 for the initial population.
+         */
+        public int getIndex() {
+            return mIndex;
+        }
+
+        public double getTotalFitness() {
+            return mTotalFitness;
+        }
+
+        public double getBestFitness() {
+            return mBestFitness;
+        }
+
+        public double getBestTotalResistance() {
+            return mBestTotalResistance;
+        }
+
+        public int getBestSize() {
+            return mBestSize;
+        }
+
+        public double getDesiredResistance() {
+            return mEvolver.getDesiredResistance();
+        }
+
+        public Resistor[] getAvailableResistors() {
+            return mEvolver.getAvailableResistors();
+        }
+
+        /**
+         * Fraction of the population with a distinct total resistance and size, between (0, 1].
+         */
+        public double getDiversity() {
+            if(mDiversity < 0)
+                mDiversity = mEvolver.diversity();
+            return mDiversity;
+        }
+    }
+
+    private static boolean isExact(double totalResistance, double desiredResistance) {
+        return Math.abs(totalResistance - desiredResistance) <= EXACT_TOLERANCE * desiredResistance;
+    }
+
+    private static class TotalFitnessDropPolicy extends StoppingPolicy {
+        private double mPrevTotalFitness;
+
+        @Override
+        public void reset() {
+            mPrevTotalFitness = 0;
+        }
+
+        @Override
+        public int check(Generation generation) {
+            double totalFitness = generation.getTotalFitness();
+            if(totalFitness < mPrevTotalFitness)
+                return TOTAL_FITNESS_DROP;
+            mPrevTotalFitness = totalFitness;
+            return CONTINUE;
+        }
+    }
+
+    private static class StagnationPolicy extends StoppingPolicy {
+        private final int mWindow;
+        private double mBestFitness;
+        private int mNumStagnant;
+
+        private StagnationPolicy(int window) {
+            mWindow = window;
+        }
+
+        @Override
+        public void reset() {
+            mBestFitness = 0;
+            mNumStagnant = 0;
+        }
+
+        @Override
+        public int check(Generation generation) {
+            if(generation.getBestFitness() > mBestFitness) {
+                mBestFitness = generation.getBestFitness();
+                mNumStagnant = 0;
+                return CONTINUE;
+            }
+            mNumStagnant ++;
+            return mNumStagnant >= mWindow ? STAGNATION : CONTINUE;
+        }
+    }
+
+    private static class ExactMatchPolicy extends StoppingPolicy {
+        /**
+         * Fewest resistors an exact match can have, or 0 until the first check.
+         */
+        private int mMinExactSize;
+
+        @Override
+        public void reset() {
+            mMinExactSize = 0;
+        }
+
+        @Override
+        public int check(Generation generation) {
+            double desired = generation.getDesiredResistance();
+            if(!isExact(generation.getBestTotalResistance(), desired))
+                return CONTINUE;
+            if(mMinExactSize == 0)
+                mMinExactSize = minExactSize(generation.getAvailableResistors(), desired);
+            return generation.getBestSize() <= mMinExactSize ? EXACT_MATCH : CONTINUE;
+        }
+
+        /*
+        1 or 2 if that many resistors can match exactly, otherwise 3. Pairs are only tried between
+        distinct resistances, and a pair of equal resistances needs two copies.
+         */
+        private static int minExactSize(Resistor[] availableResistors, double desired) {
+            int numAvailable = availableResistors.length;
+            for(Resistor r : availableResistors)
+                if(isExact(r.getResistance(), desired))
+                    return 1;
+            for(int i = 0; i < numAvailable; i ++) {
+                double a = availableResistors[i].getResistance();
+                if(i > 0 && availableResistors[i - 1].getResistance() == a)
+                    continue;
+                for(int j = i + 1; j < numAvailable; j ++) {
+                    double b = availableResistors[j].getResistance();
+                    if(j > i + 1 && availableResistors[j - 1].getResistance() == b)
+                        continue;
+                    if(isExact(Resistor.series(a, b), desired) || isExact(Resistor.parallel(a, b), desired))
+                        return 2;
+                }
+            }
+            return 3;
+        }
+    }
+
+    private static class DiversityCollapsePolicy extends StoppingPolicy {
+        private final double mMinFraction;
+
+        private DiversityCollapsePolicy(double minFraction) {
+            mMinFraction = minFraction;
+        }
+
+        @Override
+        public int check(Generation generation) {
+            return generation.getDiversity() < mMinFraction ? DIVERSITY_COLLAPSE : CONTINUE;
+        }
+    }
+
+    private static class ErrorThresholdPolicy extends StoppingPolicy {
+        private final double mMaxRelativeError;
+
+        private ErrorThresholdPolicy(double maxRelativeError) {
+            mMaxRelativeError = maxRelativeError;
+        }
+
+        @Override
+        public int check(Generation generation) {
+            double desired = generation.getDesiredResistance();
+            double error = Math.abs(generation.getBestTotalResistance() - desired) / desired;
+            return error <= mMaxRelativeError ? ERROR_THRESHOLD : CONTINUE;
+        }
+    }
+
+    private static class AnyOfPolicy extends StoppingPolicy {
+        private final StoppingPolicy[] mPolicies;
+
+        private AnyOfPolicy(StoppingPolicy[] policies) {
+            mPolicies = policies.clone();
+        }
+
+        @Override
+        public void reset() {
+            for(StoppingPolicy policy : mPolicies)
+                policy.reset();
+        }
+
+        @Override
+        public int check(Generation generation) {
+            // Every policy sees every generation so stateful ones stay up to date.
+            int reason = CONTINUE;
+            for(StoppingPolicy policy : mPolicies) {
+                int one = policy.check(generation);
+                if(reason == CONTINUE)
+                    reason = one;
+            }
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Every distinct series-parallel network that can be built from an inventory with up to maxSize
+ * resistors, stored level by level in primitive arrays.
+ *
+ * An entry is either one resistor or two smaller entries connected in series or parallel, so each
+ * sub-network is computed once and shared by every larger network built on it. Networks that only
+ * differ by the order of their connections, like (a + b) + c and a + (b + c), are only stored once:
+ * every entry keeps the structural hash CollapseKernel.structuralHash(...) gives its DNA, while
+ * different networks that happen to have the same resistance are all kept. No network uses more
+ * resistors of one resistance than the inventory holds.
+ */
+public class SubnetworkTable {
+    /**
+     * Most resistors in one network. The resistors of a network are packed into a single long.
+     */
+    public static final int MAX_SIZE = 5;
+    private static final int BITS_PER_PART = 12;
+    private static final long PART_MASK = (1L << BITS_PER_PART) - 1;
+    /**
+     * Networks built between two checks of the cancellation token.
+     */
+    private static final int CHECK_INTERVAL = 1 << 14;
+
+    /**
+     * Receives the networks built by combining two smaller entries.
+     */
+    public interface Visitor {
+        /**
+         * @param left Entry that receives.
+         * @param right Entry that gives.
+         * @param connection Resistor.SERIES or Resistor.PARALLEL.
+         * @param resistance Resistance of the combined network.
+         * @param parts Packed resistors of the combined network.
+         */
+        void visit(int left, int right, int connection, double resistance, long parts);
+    }
+
+    private final Inventory mInventory;
+    /**
+     * Available resistors that DNA built from this table refer to.
+     */
+    private final Resistor[] mResistors;
+    /**
+     * Index in mResistors of the first resistor of every distinct resistance.
+     */
+    private final int[] mFirstSlots;
+    private final int mMaxSize;
+    /**
+     * First entry of every level. Level n holds networks of n resistors.
+     */
+    private final int[] mLevelStarts;
+
+    private double[] mResistances = new double[64];
+    /**
+     * Indices (plus one) of the distinct resistances used, in ascending order, BITS_PER_PART bits each.
+     */
+    private long[] mParts = new long[64];
+    /**
+     * Combined entries, or the index of the distinct resistance and -1 for single resistors.
+     */
+    private int[] mLeft = new int[64];
+    private int[] mRight = new int[64];
+    private int[] mConnections = new int[64];
+    /**
+     * Structural hash of every entry.
+     */
+    private long[] mHashes = new long[64];
+    /**
+     * Sum of the hashes of the members of every combined entry, where members connected the same
+     * way count as part of it. See CollapseKernel.structuralHash(...).
+     */
+    private long[] mSums = new long[64];
+    private int mSize;
+
+    /**
+     * Open addressing set of entry indices plus one, used to skip networks that are already stored.
+     */
+    private int[] mBuckets = new int[128];
+
+    /**
+     * Constructor. Builds every level up to maxSize.
+     * @param inventory Available resistors.
+     * @param maxSize Most resistors in one network, between [1, MAX_SIZE].
+     */
+    public SubnetworkTable(Inventory inventory, int maxSize) {
+        this(inventory, maxSize, null);
+    }
+
+    /**
+     * Same as above, but the build stops once token is cancelled. Only cancel() stops it, not the
+     * token's budget.
+     * @param inventory Available resistors.
+     * @param maxSize Most resistors in one network, between [1, MAX_SIZE].
+     * @param token Token, or null to always finish.
+     * @throws CancellationException If token is cancelled before the table is built.
+     */
+    public SubnetworkTable(Inventory inventory, int maxSize, final CancellationToken token) {
+        if(maxSize < 1 || maxSize > MAX_SIZE)
+            throw new IllegalArgumentException("Networks must have between 1 and " + MAX_SIZE + " resistors.");
+        if(inventory.size() == 0)
+            throw new IllegalArgumentException("Must supply at least one resistor.");
+        if(inventory.size() >= PART_MASK)
+            throw new IllegalArgumentException("Too many distinct resistances to enumerate.");
+        mInventory = inventory;
+        mMaxSize = maxSize;
+        mResistors = inventory.toResistors();
+        mFirstSlots = new int[inventory.size()];
+        for(int i = 1; i < mFirstSlots.length; i ++)
+            mFirstSlots[i] = mFirstSlots[i - 1] + Math.min(inventory.getCount(i - 1), Inventory.DEFAULT_MAX_COPIES);
+
+        mLevelStarts = new int[maxSize + 2];
+        for(int i = 0; i < inventory.size(); i ++)
+            add(i, -1, -1, inventory.getResistance(i), i + 1,
+                    CollapseKernel.leafHash(inventory.getResistance(i)), 0);
+        mLevelStarts[2] = mSize;
+
+        Visitor adder = new Visitor() {
+            private int mNumVisited;
+
+            @Override
+            public void visit(int left, int right, int connection, double resistance, long parts) {
+                if(++mNumVisited % CHECK_INTERVAL == 0)
+                    checkCancelled(token);
+                long sum = groupSum(left, right, connection);
+                long hash = CollapseKernel.groupHash(sum, connection);
+                if(!contains(hash, parts))
+                    add(left, right, connection, resistance, parts, hash, sum);
+            }
+        };
+        for(int n = 2; n <= maxSize; n ++) {
+            forEachCombination(n, adder);
+            mLevelStarts[n + 1] = mSize;
+        }
+        // Only needed while building.
+        mBuckets = null;
+    }
+
+    /**
+     * Throws if token is cancelled. Does nothing for a null token.
+     */
+    static void checkCancelled(CancellationToken token) {
+        if(token != null && token.isCancelled())
+            throw new CancellationException("Cancelled while building the table.");
+    }
+
+    /**
+     * Combines every pair of stored entries with size resistors in total, in series and in
+     * parallel, as long as the inventory has enough resistors. The combined networks are not stored,
+     * so this also reaches one level past the table without keeping it in memory.
+     * @param size Number of resistors of the combined networks, between [2, min(getMaxSize() + 1, MAX_SIZE)].
+     * @param visitor Receives every combined network.
+     */
+    public void forEachCombination(int size, Visitor visitor) {
+        int maxCombined = Math.min(mMaxSize + 1, MAX_SIZE);
+        if(size < 2 || size > maxCombined)
+            throw new IllegalArgumentException("Can only combine networks of up to " + maxCombined + " resistors.");
+        // Locals stay valid while the visitor adds entries because lower levels never change.
+        double[] resistances = mResistances;
+        long[] parts = mParts;
+        int[] scratch = new int[2 * MAX_SIZE];
+        for(int leftSize = size - 1; 2 * leftSize >= size; leftSize --) {
+            int rightSize = size - leftSize;
+            int leftEnd = mLevelStarts[leftSize + 1];
+            int rightEnd = mLevelStarts[rightSize + 1];
+            for(int left = mLevelStarts[leftSize]; left < leftEnd; left ++) {
+                // Equal sizes would otherwise visit every pair twice.
+                int rightStart = leftSize == rightSize ? left : mLevelStarts[rightSize];
+                for(int right = rightStart; right < rightEnd; right ++) {
+                    long merged = mergeParts(parts[left], parts[right], scratch);
+                    if(merged < 0)
+                        continue;
+                    double a = resistances[left];
+                    double b = resistances[right];
+                    visitor.visit(left, right, Resistor.SERIES, Resistor.series(a, b), merged);
+                    visitor.visit(left, right, Resistor.PARALLEL, Resistor.parallel(a, b), merged);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the resistors of two networks.
+     * @return Packed resistors, or -1 if the inventory does not have enough of them.
+     */
+    long mergeParts(long a, long b, int[] scratch) {
+        int n = 0;
+        while(a != 0 || b != 0) {
+            long partA = a & PART_MASK;
+            long partB = b & PART_MASK;
+            if(partB == 0 || (partA != 0 && partA <= partB)) {
+                scratch[n++] = (int)partA;
+                a >>>= BITS_PER_PART;
+            } else {
+                scratch[n++] = (int)partB;
+                b >>>= BITS_PER_PART;
+            }
+        }
+        if(n > MAX_SIZE)
+            return -1;
+        long merged = 0;
+        int run = 0;
+        for(int i = n - 1; i >= 0; i --) {
+            run = (i < n - 1 && scratch[i] == scratch[i + 1]) ? run + 1 : 1;
+            if(run > mInventory.getCount(scratch[i] - 1))
+                return -1;
+            merged = (merged << BITS_PER_PART) | scratch[i];
+        }
+        return merged;
+    }
+
+    /**
+     * Whether the inventory has enough resistors to build two networks at once. Unlike
+     * mergeParts(...), the two networks may hold more than MAX_SIZE resistors together.
+     * @param a Packed resistors of the first network.
+     * @param b Packed resistors of the second network.
+     * @return True if both networks can be built.
+     */
+    public boolean canCombine(long a, long b) {
+        // Both lists are sorted, so equal resistances are next to each other in one merge pass.
+        int previous = 0;
+        int run = 0;
+        while(a != 0 || b != 0) {
+            long partA = a & PART_MASK;
+            long partB = b & PART_MASK;
+            int part;
+            if(partB == 0 || (partA != 0 && partA <= partB)) {
+                part = (int)partA;
+                a >>>= BITS_PER_PART;
+            } else {
+                part = (int)partB;
+                b >>>= BITS_PER_PART;
+            }
+            run = part == previous ? run + 1 : 1;
+            previous = part;
+            if(run > mInventory.getCount(part - 1))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Structural hash of two entries connected together, like the networks given to a Visitor.
+     * Equal to CollapseKernel.structuralHash(...) of toDNA(left, right, connection).
+     */
+    public long structuralHash(int left, int right, int connection) {
+        return CollapseKernel.groupHash(groupSum(left, right, connection), connection);
+    }
+
+    /*
+    Sum of the member hashes of the group built by connecting left and right.
+     */
+    private long groupSum(int left, int right, int connection) {
+        return memberHash(left, connection) + memberHash(right, connection);
+    }
+
+    /*
+    What an entry adds to a group of kind connection: its members if it is a group of the same
+    kind, otherwise itself.
+     */
+    private long memberHash(int entry, int connection) {
+        return mConnections[entry] == connection ? mSums[entry] : mHashes[entry];
+    }
+
+    private boolean contains(long hash, long parts) {
+        int mask = mBuckets.length - 1;
+        for(int i = bucket(hash) & mask; mBuckets[i] != 0; i = (i + 1) & mask) {
+            int entry = mBuckets[i] - 1;
+            if(mHashes[entry] == hash && mParts[entry] == parts)
+                return true;
+        }
+        return false;
+    }
+
+    private static int bucket(long hash) {
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    private void add(int left, int right, int connection, double resistance, long parts, long hash, long sum) {
+        if(mSize == mResistances.length) {
+            int capacity = mSize * 2;
+            mResistances = Arrays.copyOf(mResistances, capacity);
+            mParts = Arrays.copyOf(mParts, capacity);
+            mLeft = Arrays.copyOf(mLeft, capacity);
+            mRight = Arrays.copyOf(mRight, capacity);
+            mConnections = Arrays.copyOf(mConnections, capacity);
+            mHashes = Arrays.copyOf(mHashes, capacity);
+            mSums = Arrays.copyOf(mSums, capacity);
+        }
+        int entry = mSize++;
+        mResistances[entry] = resistance;
+        mParts[entry] = parts;
+        mLeft[entry] = left;
+        mRight[entry] = right;
+        mConnections[entry] = connection;
+        mHashes[entry] = hash;
+        mSums[entry] = sum;
+
+        if(2 * mSize > mBuckets.length)
+            rehash(mBuckets.length * 2);
+        int mask = mBuckets.length - 1;
+        int i = bucket(hash) & mask;
+        while(mBuckets[i] != 0)
+            i = (i + 1) & mask;
+        mBuckets[i] = entry + 1;
+    }
+
+    private void rehash(int capacity) {
+        mBuckets = new int[capacity];
+        int mask = capacity - 1;
+        for(int entry = 0; entry < mSize; entry ++) {
+            int i = bucket(mHashes[entry]) & mask;
+            while(mBuckets[i] != 0)
+                i = (i + 1) & mask;
+            mBuckets[i] = entry + 1;
+        }
+    }
+
+    /**
+     * Builds the DNA of a stored entry.
+     * @param entry Entry.
+     * @return DNA over getAvailableResistors().
+     */
+    public DNA toDNA(int entry) {
+        List<int[]> merges = new ArrayList<>();
+        int[] uses = new int[mInventory.size()];
+        List<Integer> slots = new ArrayList<>();
+        emit(entry, uses, slots, merges);
+        return toDNA(slots, merges);
+    }
+
+    /**
+     * Builds the DNA of two entries connected together, like the networks given to a Visitor.
+     * @param left Entry that receives.
+     * @param right Entry that gives.
+     * @param connection Resistor.SERIES or Resistor.PARALLEL.
+     * @return DNA over getAvailableResistors().
+     */
+    public DNA toDNA(int left, int right, int connection) {
+        List<int[]> merges = new ArrayList<>();
+        int[] uses = new int[mInventory.size()];
+        List<Integer> slots = new ArrayList<>();
+        int receiver = emit(left, uses, slots, merges);
+        int giver = emit(right, uses, slots, merges);
+        merges.add(new int[]{receiver, giver, connection});
+        return toDNA(slots, merges);
+    }
+
+    /**
+     * Assigns resistors to the leaves of entry and lists its connections in post-order, so every
+     * connection joins the two most recently built sub-networks, which is what RPNQueue(...) expects.
+     * @return Resistor that represents entry in later connections.
+     */
+    private int emit(int entry, int[] uses, List<Integer> slots, List<int[]> merges) {
+        if(mRight[entry] < 0) {
+            int value = mLeft[entry];
+            int slot = mFirstSlots[value] + uses[value]++;
+            slots.add(slot);
+            return slot;
+        }
+        int receiver = emit(mLeft[entry], uses, slots, merges);
+        int giver = emit(mRight[entry], uses, slots, merges);
+        merges.add(new int[]{receiver, giver, mConnections[entry]});
+        return receiver;
+    }
+
+    private DNA toDNA(List<Integer> slots, List<int[]> merges) {
+        long[] survivors = new long[DNA.numWords(mResistors.length)];
+        for(int slot : slots)
+            survivors[slot >>> 6] |= 1L << slot;
+        List<Integer> remaining = new ArrayList<>(slots);
+        Collections.sort(remaining);
+
+        int numMerges = merges.size();
+        int[] receivers = new int[numMerges];
+        int[] givers = new int[numMerges];
+        int[] connections = new int[numMerges];
+        for(int i = 0; i < numMerges; i ++) {
+            int[] merge = merges.get(i);
+            receivers[i] = Collections.binarySearch(remaining, merge[0]);
+            givers[i] = Collections.binarySearch(remaining, merge[1]);
+            connections[i] = merge[2];
+            remaining.remove(givers[i]);
+        }
+        return new DNA(survivors, mResistors.length, slots.size(), receivers, givers, connections);
+    }
+
+    /**
+     * Available resistors that DNA from toDNA(...) refer to.
+     */
+    public Resistor[] getAvailableResistors() {
+        return mResistors;
+    }
+
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Total number of entries.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * First entry with n resistors.
+     */
+    public int getLevelStart(int n) {
+        return mLevelStarts[n];
+    }
+
+    /**
+     * Entry after the last entry with n resistors.
+     */
+    public int getLevelEnd(int n) {
+        return mLevelStarts[n + 1];
+    }
+
+    public double getResistance(int entry) {
+        return mResistances[entry];
+    }
+
+    public long getParts(int entry) {
+        return mParts[entry];
+    }
+
+    /**
+     * Structural hash of an entry, equal to CollapseKernel.structuralHash(...) of toDNA(entry).
+     */
+    public long getStructuralHash(int entry) {
+        return mHashes[entry];
+    }
+
+    /**
+     * Number of resistors in a network with the given packed resistors.
+     */
+    public static int numParts(long parts) {
+        int n = 0;
+        for(; parts != 0; parts >>>= BITS_PER_PART)
+            n ++;
+        return n;
+    }
+}
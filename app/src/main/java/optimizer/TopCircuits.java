@@ -0,0 +1,119 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the most fit circuits seen so far, sorted, for the solvers built on a SubnetworkTable.
+ * A circuit is either a table entry or two entries connected together. Only circuits that make it
+ * in are allocated, so scoring millions of networks stays cheap. Circuits are told apart by
+ * their structural hash from the table, the same as CollapseKernel.structuralHash(...) gives their
+ * DNA, so a circuit is only kept once however it was combined, while different circuits that
+ * happen to have the same resistance and size are all kept.
+ */
+class TopCircuits {
+    private final int mCapacity;
+    private final SubnetworkTable mTable;
+    private final List<Circuit> mCircuits = new ArrayList<>();
+    /**
+     * Structural hashes of the kept circuits.
+     */
+    private final Set<Long> mKept = new HashSet<>();
+
+    /**
+     * Constructor.
+     * @param capacity Most circuits kept.
+     * @param table Table the offered entries belong to.
+     */
+    TopCircuits(int capacity, SubnetworkTable table) {
+        mCapacity = capacity;
+        mTable = table;
+    }
+
+    /**
+     * Offers a circuit.
+     * @param fitness Fitness of the circuit.
+     * @param resistance Total resistance.
+     * @param size Number of resistors.
+     * @param left Table entry, or the entry that receives.
+     * @param right Entry that gives, or -1 if the circuit is just left.
+     * @param connection Connection between left and right.
+     */
+    void offer(double fitness, double resistance, int size, int left, int right, int connection) {
+        int numCircuits = mCircuits.size();
+        if(mCapacity <= 0 || (numCircuits == mCapacity && fitness <= mCircuits.get(numCircuits - 1).mFitness))
+            return;
+        long hash = right < 0 ? mTable.getStructuralHash(left) : mTable.structuralHash(left, right, connection);
+        if(!mKept.add(hash))
+            return;
+        Circuit circuit = new Circuit(fitness, resistance, size, left, right, connection, hash);
+        int index = Collections.binarySearch(mCircuits, circuit);
+        if(index < 0)
+            index = -index - 1;
+        // Insert after circuits of equal fitness so the first one found stays ahead.
+        while(index < numCircuits && mCircuits.get(index).mFitness == fitness)
+            index ++;
+        mCircuits.add(index, circuit);
+        if(mCircuits.size() > mCapacity)
+            mKept.remove(mCircuits.remove(mCircuits.size() - 1).mHash);
+    }
+
+    /**
+     * Fitness a circuit must beat to be kept, or -infinity while there is room.
+     */
+    double threshold() {
+        int numCircuits = mCircuits.size();
+        if(mCapacity <= 0)
+            return Double.POSITIVE_INFINITY;
+        return numCircuits < mCapacity ? Double.NEGATIVE_INFINITY : mCircuits.get(numCircuits - 1).mFitness;
+    }
+
+    /**
+     * Builds the DNA of the kept circuits.
+     * @return DNA over the table's available resistors, most fit first, with fitness, total
+     *         resistance, size and rank set.
+     */
+    DNA[] toDNA() {
+        DNA[] dna = new DNA[mCircuits.size()];
+        for(int i = 0; i < dna.length; i ++) {
+            Circuit circuit = mCircuits.get(i);
+            DNA one = circuit.mRight < 0 ? mTable.toDNA(circuit.mLeft)
+                    : mTable.toDNA(circuit.mLeft, circuit.mRight, circuit.mConnection);
+            one.setFitness(circuit.mFitness);
+            one.setTotalResistance(circuit.mResistance);
+            one.setSize(circuit.mSize);
+            one.setRank(i + 1);
+            dna[i] = one;
+        }
+        return dna;
+    }
+
+    private static class Circuit implements Comparable<Circuit> {
+        private final double mFitness;
+        private final double mResistance;
+        private final int mSize;
+        private final int mLeft;
+        private final int mRight;
+        private final int mConnection;
+        private final long mHash;
+
+        private Circuit(double fitness, double resistance, int size, int left, int right, int connection, long hash) {
+            mFitness = fitness;
+            mResistance = resistance;
+            mSize = size;
+            mLeft = left;
+            mRight = right;
+            mConnection = connection;
+            mHash = hash;
+        }
+
+        @Override
+        public int compareTo(Circuit circuit) {
+            // Descending order.
+            return Double.compare(circuit.mFitness, mFitness);
+        }
+    }
+}
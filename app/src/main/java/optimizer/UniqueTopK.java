@@ -0,0 +1,85 @@
+package optimizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Selects the k most fit DNA building distinct circuits out of any number of offered DNA, without
+ * sorting them all. The kept DNA sit in a heap with the least fit on top, so offering P DNA costs
+ * O(P log k), and most DNA are turned away by comparing with threshold() alone. Circuits are told
+ * apart by CollapseKernel.structuralHash(...), which is only computed for DNA that beat the
+ * threshold.
+ */
+class UniqueTopK {
+    private static final Comparator<DNA> LEAST_FIT_FIRST = new Comparator<DNA>() {
+        @Override
+        public int compare(DNA a, DNA b) {
+            return Double.compare(a.getFitness(), b.getFitness());
+        }
+    };
+
+    private final int mCapacity;
+    private final PriorityQueue<DNA> mHeap;
+    /**
+     * Structural hash of every kept DNA.
+     */
+    private final Map<DNA, Long> mHashes = new IdentityHashMap<>();
+    /**
+     * Same hashes as a set, to find DNA building a circuit that is already kept.
+     */
+    private final Set<Long> mKept = new HashSet<>();
+    private final CollapseKernel mKernel;
+
+    /**
+     * Constructor.
+     * @param capacity Most DNA kept.
+     * @param availableResistors Available resistors every offered DNA is built over.
+     */
+    UniqueTopK(int capacity, Resistor[] availableResistors) {
+        mCapacity = Math.max(capacity, 0);
+        // PriorityQueue needs an initial capacity of at least 1.
+        mHeap = new PriorityQueue<>(Math.max(mCapacity, 1), LEAST_FIT_FIRST);
+        mKernel = new CollapseKernel(availableResistors);
+    }
+
+    /**
+     * Offers an evaluated DNA.
+     */
+    void offer(DNA dna) {
+        if(mCapacity == 0 || (mHeap.size() == mCapacity && dna.getFitness() <= mHeap.peek().getFitness()))
+            return;
+        Long hash = mKernel.structuralHash(dna);
+        if(!mKept.add(hash))
+            return;
+        mHashes.put(dna, hash);
+        mHeap.add(dna);
+        if(mHeap.size() > mCapacity)
+            mKept.remove(mHashes.remove(mHeap.poll()));
+    }
+
+    /**
+     * Fitness a DNA must beat to be kept, or -infinity while there is room.
+     */
+    double threshold() {
+        if(mCapacity == 0)
+            return Double.POSITIVE_INFINITY;
+        return mHeap.size() < mCapacity ? Double.NEGATIVE_INFINITY : mHeap.peek().getFitness();
+    }
+
+    /**
+     * Kept DNA, most fit first.
+     */
+    List<DNA> toList() {
+        List<DNA> list = new ArrayList<>(mHeap);
+        // DNA sort in descending order of fitness.
+        Collections.sort(list);
+        return list;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.equivalentresistor;
+
+import org.junit.Test;
+
+import optimizer.Inventory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that result cache keys only depend on what a search depends on.
+ */
+public class ResultCacheTest {
+    private static final Inventory INVENTORY = new Inventory(new double[]{10, 22, 47}, new int[]{1, 2, 3});
+
+    @Test
+    public void key_ignoresInputOrder() {
+        Inventory shuffled = new Inventory(new double[]{47, 10, 22, 47}, new int[]{1, 1, 2, 2});
+        assertEquals(ResultCache.key(INVENTORY, 100, 50), ResultCache.key(shuffled, 100, 50));
+    }
+
+    @Test
+    public void key_changesWithSearch() {
+        String key = ResultCache.key(INVENTORY, 100, 50);
+        assertNotEquals(key, ResultCache.key(new Inventory(new double[]{10, 22, 47}, new int[]{1, 2, 4}), 100, 50));
+        assertNotEquals(key, ResultCache.key(new Inventory(new double[]{10, 22, 48}, new int[]{1, 2, 3}), 100, 50));
+        assertNotEquals(key, ResultCache.key(INVENTORY, 100.000001, 50));
+        assertNotEquals(key, ResultCache.key(INVENTORY, 100, 51));
+    }
+
+    @Test
+    public void key_isStableFileName() {
+        String key = ResultCache.key(INVENTORY, 100, 50);
+        assertTrue(key.matches("[0-9a-f]+_[0-9a-f]+_[0-9]+"));
+        // Keys name files that outlive the app, so they must not change between versions.
+        assertEquals("3909a6cfa27e0e9d_4059000000000000_50", key);
+    }
+}
@@ -0,0 +1,88 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the index lookups against a scan of every indexed circuit.
+ */
+public class AchievableIndexTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{10, 22, 47, 100, 220, 470, 1000, 2200},
+            new int[]{2, 1, 3, 1, 2, 1, 4, 2});
+
+    @Test
+    public void nearest_matchesScan() {
+        AchievableIndex index = new AchievableIndex(INVENTORY);
+        RandomStream random = new RandomStream(5);
+        for(int i = 0; i < 500; i ++) {
+            double target = 1 + random.nextDouble() * 10000;
+            for(int maxParts = 1; maxParts <= index.getMaxParts(); maxParts ++) {
+                double bestDiff = Double.POSITIVE_INFINITY;
+                for(int n = 1; n <= maxParts; n ++)
+                    for(double resistance : index.getSortedResistances(n))
+                        bestDiff = Math.min(bestDiff, Math.abs(resistance - target));
+
+                int entry = index.nearest(target, maxParts);
+                assertEquals(bestDiff, Math.abs(index.getResistance(entry) - target), 0);
+                assertTrue(index.getNumParts(entry) <= maxParts);
+            }
+        }
+    }
+
+    @Test
+    public void nearest_exactResistance() {
+        AchievableIndex index = new AchievableIndex(INVENTORY);
+        int entry = index.nearest(47, index.getMaxParts());
+        assertEquals(47, index.getResistance(entry), 0);
+        assertEquals(1, index.getNumParts(entry));
+    }
+
+    @Test
+    public void mostFitDNA_matchesScan() {
+        AchievableIndex index = new AchievableIndex(INVENTORY);
+        double target = 333;
+        int sizePriority = 20;
+        double best = 0;
+        for(int n = 1; n <= index.getMaxParts(); n ++)
+            for(double resistance : index.getSortedResistances(n))
+                best = Math.max(best, EvolveOptimalResistors.inverseWeightedSum(target, sizePriority, resistance, n));
+
+        DNA[] top = index.mostFitDNA(target, sizePriority, 5);
+        assertEquals(5, top.length);
+        assertEquals(best, top[0].getFitness(), 0);
+        for(int i = 1; i < top.length; i ++)
+            assertTrue(top[i - 1].getFitness() >= top[i].getFitness());
+    }
+
+    @Test
+    public void maxParts_followsMaxEntries() {
+        assertEquals(3, AchievableIndex.maxParts(1));
+        assertEquals(3, AchievableIndex.maxParts(32));
+        assertEquals(2, AchievableIndex.maxParts(33));
+        assertEquals(2, AchievableIndex.maxParts(256));
+        assertEquals(1, AchievableIndex.maxParts(257));
+        assertEquals(3, new AchievableIndex(INVENTORY).getMaxParts());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void constructor_stopsWhenCancelled() {
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        new AchievableIndex(INVENTORY, token);
+    }
+
+    @Test
+    public void constructor_ignoresBudget() {
+        AchievableIndex index = new AchievableIndex(INVENTORY, new CancellationToken(0));
+        assertEquals(3, index.getMaxParts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nearest_needsAPart() {
+        new AchievableIndex(INVENTORY).nearest(100, 0);
+    }
+}
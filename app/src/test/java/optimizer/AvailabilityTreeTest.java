@@ -0,0 +1,74 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the Fenwick tree of available positions against a plain list of them.
+ */
+public class AvailabilityTreeTest {
+    @Test
+    public void randomTakesAndGiveBacks_sameAsList() {
+        for(int size : new int[]{1, 2, 7, 8, 9, 100}) {
+            AvailabilityTree tree = new AvailabilityTree(size);
+            boolean[] available = new boolean[size];
+            for(int i = 0; i < size; i ++)
+                available[i] = true;
+            RandomStream random = new RandomStream(size);
+            for(int step = 0; step < 2000; step ++) {
+                int index = random.nextInt(size);
+                if(available[index])
+                    tree.take(index);
+                else
+                    tree.giveBack(index);
+                available[index] = !available[index];
+                assertSameAs(available, tree);
+            }
+        }
+    }
+
+    @Test
+    public void takeAll_leavesNothingToSelect() {
+        AvailabilityTree tree = new AvailabilityTree(5);
+        for(int i = 4; i >= 0; i --)
+            tree.take(i);
+        assertEquals(0, tree.getNumAvailable());
+        assertEquals(0, tree.countBefore(5));
+        tree.giveBack(3);
+        assertEquals(3, tree.select(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void select_rejectsMissingPosition() {
+        AvailabilityTree tree = new AvailabilityTree(6);
+        tree.take(2);
+        tree.select(5);
+    }
+
+    @Test
+    public void emptyTree_hasNothingAvailable() {
+        AvailabilityTree tree = new AvailabilityTree(0);
+        assertEquals(0, tree.getNumAvailable());
+        assertEquals(0, tree.countBefore(0));
+    }
+
+    /*
+    Compares every query of the tree with the list of available positions.
+     */
+    private static void assertSameAs(boolean[] available, AvailabilityTree tree) {
+        List<Integer> positions = new ArrayList<>();
+        for(int i = 0; i < available.length; i ++) {
+            assertEquals(positions.size(), tree.countBefore(i));
+            if(available[i])
+                positions.add(i);
+        }
+        assertEquals(positions.size(), tree.countBefore(available.length));
+        assertEquals(positions.size(), tree.getNumAvailable());
+        for(int k = 0; k < positions.size(); k ++)
+            assertEquals((int) positions.get(k), tree.select(k));
+    }
+}
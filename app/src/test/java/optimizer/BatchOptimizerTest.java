@@ -0,0 +1,94 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that batch results do not depend on how the searches are scheduled, and that requests
+ * are validated.
+ */
+public class BatchOptimizerTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{1, 2.2, 4.7, 10, 22, 47, 100, 220, 470, 1000, 2200, 4700, 10000},
+            new int[]{4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4});
+
+    @Test
+    public void solve_sameForEveryParallelism() {
+        BatchOptimizer batch = new BatchOptimizer(INVENTORY);
+        List<BatchOptimizer.Request> requests = new ArrayList<>();
+        requests.add(new BatchOptimizer.Request(123, 50));
+        requests.add(new BatchOptimizer.Request(4321, 80));
+        requests.add(new BatchOptimizer.Request(0.9, 20));
+        List<List<Queue<DNADecipherUnit>>> sequential = batch.solve(requests, 60, 10, 40, 3, 1, new RandomStream(7));
+        List<List<Queue<DNADecipherUnit>>> parallel = batch.solve(requests, 60, 10, 40, 3, 3, new RandomStream(7));
+        assertEquals(requests.size(), sequential.size());
+        assertEquals(requests.size(), parallel.size());
+        for(int i = 0; i < sequential.size(); i ++)
+            assertSameResults(sequential.get(i), parallel.get(i));
+    }
+
+    @Test
+    public void solve_firstRequestSameAlone() {
+        BatchOptimizer batch = new BatchOptimizer(INVENTORY);
+        List<BatchOptimizer.Request> requests = new ArrayList<>();
+        requests.add(new BatchOptimizer.Request(555, 60));
+        requests.add(new BatchOptimizer.Request(68, 60));
+        List<List<Queue<DNADecipherUnit>>> both = batch.solve(requests, 60, 10, 30, 3, 2, new RandomStream(3));
+        List<List<Queue<DNADecipherUnit>>> alone = batch.solve(requests.subList(0, 1), 60, 10, 30, 3, 2,
+                new RandomStream(3));
+        assertSameResults(alone.get(0), both.get(0));
+    }
+
+    @Test
+    public void solve_noRequests() {
+        BatchOptimizer batch = new BatchOptimizer(INVENTORY);
+        List<BatchOptimizer.Request> none = Collections.emptyList();
+        assertTrue(batch.solve(none, 60, 10, 30, 3, 2, new RandomStream(3)).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void solve_rejectsZeroParallelism() {
+        List<BatchOptimizer.Request> requests = new ArrayList<>();
+        requests.add(new BatchOptimizer.Request(100, 50));
+        new BatchOptimizer(INVENTORY).solve(requests, 60, 10, 30, 3, 0, new RandomStream(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void request_rejectsNegativeSizePriority() {
+        new BatchOptimizer.Request(100, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void request_rejectsSizePriorityOver100() {
+        new BatchOptimizer.Request(100, 101);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void request_rejectsNonPositiveResistance() {
+        new BatchOptimizer.Request(0, 50);
+    }
+
+    private static void assertSameResults(List<Queue<DNADecipherUnit>> expected, List<Queue<DNADecipherUnit>> actual) {
+        List<DNA> expectedDNA = topDNA(expected);
+        List<DNA> actualDNA = topDNA(actual);
+        assertFalse(expectedDNA.isEmpty());
+        assertEquals(expectedDNA.size(), actualDNA.size());
+        for(int i = 0; i < expectedDNA.size(); i ++)
+            EvolveOptimalResistorsTest.assertSameDNA(expectedDNA.get(i), actualDNA.get(i));
+    }
+
+    private static List<DNA> topDNA(List<Queue<DNADecipherUnit>> queues) {
+        List<DNA> dna = new ArrayList<>();
+        for(Queue<DNADecipherUnit> queue : queues)
+            for(DNADecipherUnit unit : queue)
+                if(unit.type() == DNADecipherUnit.DNA)
+                    dna.add(unit.getDNA());
+        return dna;
+    }
+}
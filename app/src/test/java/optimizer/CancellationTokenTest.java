@@ -0,0 +1,81 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks when cancellation tokens ask a search to stop, and that a stopped search still returns circuits.
+ */
+public class CancellationTokenTest {
+    @Test
+    public void noBudget_stopsOnlyOnCancel() {
+        CancellationToken token = new CancellationToken();
+        assertFalse(token.isStopRequested());
+        assertFalse(token.wasStopRequested());
+        token.cancel();
+        assertTrue(token.isCancelled());
+        assertTrue(token.isStopRequested());
+        assertTrue(token.wasStopRequested());
+    }
+
+    @Test
+    public void zeroBudget_stopsWithoutCancel() {
+        CancellationToken token = new CancellationToken(0);
+        assertTrue(token.isStopRequested());
+        assertFalse(token.isCancelled());
+        assertTrue(token.wasStopRequested());
+    }
+
+    @Test
+    public void largeBudget_doesNotStop() {
+        CancellationToken token = new CancellationToken(60 * 60 * 1000);
+        assertFalse(token.isStopRequested());
+        token.restartBudget();
+        assertFalse(token.isStopRequested());
+    }
+
+    @Test
+    public void stopRequest_latches() throws InterruptedException {
+        CancellationToken token = new CancellationToken(1);
+        Thread.sleep(5);
+        assertTrue(token.isStopRequested());
+        // A request once seen stays, even though the budget now starts over.
+        token.restartBudget();
+        assertTrue(token.isStopRequested());
+    }
+
+    @Test
+    public void restartBudget_withoutBudget_doesNothing() {
+        CancellationToken token = new CancellationToken();
+        token.restartBudget();
+        assertFalse(token.isStopRequested());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeBudget_throws() {
+        new CancellationToken(-1);
+    }
+
+    @Test
+    public void evolve_stopsWhenCancelled() {
+        EvolveOptimalResistors evolver = EvolveOptimalResistorsTest.newEvolver(1);
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        evolver.setCancellationToken(token);
+        evolver.evolve();
+        assertEquals(StoppingPolicy.STOP_REQUESTED, evolver.getStopReason());
+        assertTrue(evolver.mostFitDNA(1).length > 0);
+    }
+
+    @Test
+    public void evolve_stopsWhenOutOfBudget() {
+        EvolveOptimalResistors evolver = EvolveOptimalResistorsTest.newEvolver(1);
+        CancellationToken token = new CancellationToken(0);
+        evolver.setCancellationToken(token);
+        evolver.evolve();
+        assertEquals(StoppingPolicy.STOP_REQUESTED, evolver.getStopReason());
+        assertFalse(token.isCancelled());
+        assertTrue(evolver.mostFitDNA(1).length > 0);
+    }
+}
@@ -0,0 +1,120 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the CollapseKernel against the original collapse over a list of Resistor.
+ */
+public class CollapseKernelTest {
+    private static final Resistor[] AVAILABLE = new Inventory(
+            new double[]{10, 22, 47, 100, 220, 470, 1000, 4700},
+            new int[]{3, 2, 4, 1, 2, 3, 2, 1}).toResistors();
+
+    @Test
+    public void collapse_matchesResistorCollapse() {
+        RandomStream random = new RandomStream(1);
+        CollapseKernel kernel = new CollapseKernel(AVAILABLE);
+        for(int i = 0; i < 2000; i ++) {
+            DNA dna = new DNA(AVAILABLE.length, 100, random);
+            kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+            Resistor expected = collapseResistors(dna);
+            assertEquals(expected.getTempTotalResistance(), kernel.getTotalResistance(), 0);
+            assertEquals(expected.getTempSize(), kernel.getSize());
+        }
+    }
+
+    @Test
+    public void collapse_largeInventory() {
+        double[] resistances = new double[150];
+        int[] counts = new int[resistances.length];
+        for(int i = 0; i < resistances.length; i ++) {
+            resistances[i] = 1 + i * 3.3;
+            counts[i] = 1;
+        }
+        Resistor[] available = new Inventory(resistances, counts).toResistors();
+        RandomStream random = new RandomStream(2);
+        CollapseKernel kernel = new CollapseKernel(available);
+        for(int i = 0; i < 200; i ++) {
+            DNA dna = new DNA(available.length, 60, random);
+            kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+            Resistor expected = collapseResistors(dna, available);
+            assertEquals(expected.getTempTotalResistance(), kernel.getTotalResistance(), 0);
+            assertEquals(expected.getTempSize(), kernel.getSize());
+        }
+    }
+
+    @Test
+    public void structuralHash_ignoresOrderAndNesting() {
+        Resistor[] available = {new Resistor(10), new Resistor(22), new Resistor(47)};
+        CollapseKernel kernel = new CollapseKernel(available);
+        // (10 + 22) + 47 and 10 + (22 + 47) are one series group of three.
+        long leftFirst = kernel.structuralHash(threeOf(new int[]{0, 0}, new int[]{1, 1},
+                new int[]{Resistor.SERIES, Resistor.SERIES}));
+        long rightFirst = kernel.structuralHash(threeOf(new int[]{1, 0}, new int[]{2, 1},
+                new int[]{Resistor.SERIES, Resistor.SERIES}));
+        assertEquals(leftFirst, rightFirst);
+
+        long parallel = kernel.structuralHash(threeOf(new int[]{0, 0}, new int[]{1, 1},
+                new int[]{Resistor.PARALLEL, Resistor.PARALLEL}));
+        assertNotEquals(leftFirst, parallel);
+
+        // (10 + 22) || 47 and 10 + (22 || 47) are different circuits.
+        long seriesThenParallel = kernel.structuralHash(threeOf(new int[]{0, 0}, new int[]{1, 1},
+                new int[]{Resistor.SERIES, Resistor.PARALLEL}));
+        long parallelThenSeries = kernel.structuralHash(threeOf(new int[]{1, 0}, new int[]{2, 1},
+                new int[]{Resistor.PARALLEL, Resistor.SERIES}));
+        assertNotEquals(seriesThenParallel, parallelThenSeries);
+    }
+
+    @Test
+    public void structuralHash_ignoresCopies() {
+        Resistor[] available = {new Resistor(10), new Resistor(10), new Resistor(22)};
+        CollapseKernel kernel = new CollapseKernel(available);
+        long first = kernel.structuralHash(new DNA(new long[]{0b101}, 3, 2, new int[]{0}, new int[]{1},
+                new int[]{Resistor.SERIES}));
+        long second = kernel.structuralHash(new DNA(new long[]{0b110}, 3, 2, new int[]{0}, new int[]{1},
+                new int[]{Resistor.SERIES}));
+        assertEquals(first, second);
+    }
+
+    private static DNA threeOf(int[] receivers, int[] givers, int[] connections) {
+        return new DNA(new long[]{0b111}, 3, 3, receivers, givers, connections);
+    }
+
+    private static Resistor collapseResistors(DNA dna) {
+        return collapseResistors(dna, AVAILABLE);
+    }
+
+    /*
+    The collapse EvolveOptimalResistors used before CollapseKernel.
+     */
+    static Resistor collapseResistors(DNA dna, Resistor[] available) {
+        List<Resistor> resistors = new ArrayList<>();
+        for(int i = 0; i < available.length; i ++) {
+            if(dna.isSurvivor(i)) {
+                Resistor copy = new Resistor(available[i].getResistance());
+                copy.updateTemps();
+                resistors.add(copy);
+            }
+        }
+        int[] receivers = dna.getReceivers();
+        int[] givers = dna.getGivers();
+        int[] connections = dna.getConnections();
+        for(int i = 0; i < receivers.length; i ++) {
+            Resistor r = resistors.get(receivers[i]);
+            Resistor g = resistors.remove(givers[i]);
+            if(connections[i] == Resistor.SERIES)
+                r.setTempTotalResistance(Resistor.series(r.getTempTotalResistance(), g.getTempTotalResistance()));
+            else
+                r.setTempTotalResistance(Resistor.parallel(r.getTempTotalResistance(), g.getTempTotalResistance()));
+            r.addTempSize(g.getTempSize());
+        }
+        assertEquals(1, resistors.size());
+        return resistors.get(0);
+    }
+}
@@ -0,0 +1,124 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that equally seeded searches give the same result whatever the number of threads, and
+ * that elitism never loses the most fit circuit.
+ */
+public class EvolveOptimalResistorsTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{1, 2.2, 4.7, 10, 22, 47, 100, 220, 470, 1000, 2200, 4700, 10000},
+            new int[]{4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4});
+    /**
+     * Large enough to be split into one chunk per thread.
+     */
+    private static final int POP_SIZE = 600;
+
+    @Test
+    public void evaluateFitness_sameForEveryParallelism() {
+        EvolveOptimalResistors sequential = newEvolver(1);
+        EvolveOptimalResistors parallel = newEvolver(4);
+        assertEquals(sequential.evaluateFitness(), parallel.evaluateFitness(), 0);
+        DNA[] expected = sequential.mostFitDNA(-1);
+        DNA[] actual = parallel.mostFitDNA(-1);
+        assertEquals(POP_SIZE, actual.length);
+        for(int i = 0; i < expected.length; i ++)
+            assertSameDNA(expected[i], actual[i]);
+    }
+
+    @Test
+    public void evolve_sameForEveryParallelism() {
+        DNA[] sequential = evolve(newEvolver(1));
+        DNA[] parallel = evolve(newEvolver(4));
+        assertEquals(sequential.length, parallel.length);
+        for(int i = 0; i < sequential.length; i ++)
+            assertSameDNA(sequential[i], parallel[i]);
+    }
+
+    @Test
+    public void evolve_sameForEqualSeeds() {
+        DNA[] first = evolve(newEvolver(2));
+        DNA[] second = evolve(newEvolver(2));
+        for(int i = 0; i < first.length; i ++)
+            assertSameDNA(first[i], second[i]);
+    }
+
+    @Test
+    public void elitism_keepsMostFitDNA() {
+        assertKeepsMostFit(false);
+        assertKeepsMostFit(true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setElitism_rejectsNegative() {
+        newEvolver(1).setElitism(-1);
+    }
+
+    /*
+    Evolves every generation, checking that the most fit individual of each one comes back first
+    in the next with the same fitness, so the best fitness never drops.
+     */
+    private static void assertKeepsMostFit(boolean packed) {
+        EvolveOptimalResistors evolver = newEvolver(2);
+        evolver.setPackedPopulation(packed);
+        evolver.setElitism(1);
+        // Never stops early.
+        evolver.setStoppingPolicy(StoppingPolicy.anyOf());
+        final List<double[]> generations = new ArrayList<>();
+        evolver.setGenerationHook(new EvolveOptimalResistors.GenerationHook() {
+            @Override
+            public void onEvaluated(EvolveOptimalResistors evolver, int generation, double[] allFitness) {
+                generations.add(allFitness.clone());
+            }
+        });
+        evolver.evolve();
+        assertEquals(40, generations.size());
+        double prevBest = max(generations.get(0));
+        for(int i = 1; i < generations.size(); i ++) {
+            double[] allFitness = generations.get(i);
+            assertEquals(prevBest, allFitness[0], 0);
+            prevBest = max(allFitness);
+        }
+        assertTrue(evolver.mostFitDNA(1)[0].getFitness() >= prevBest);
+        assertTrue(evolver.getHallOfFame().toArray()[0].getFitness() >= prevBest);
+    }
+
+    private static double max(double[] values) {
+        double max = values[0];
+        for(double value : values)
+            max = Math.max(max, value);
+        return max;
+    }
+
+    static EvolveOptimalResistors newEvolver(int parallelism) {
+        EvolveOptimalResistors evolver = new EvolveOptimalResistors(INVENTORY.toResistors(), 777, 60, POP_SIZE, 10,
+                40, parallelism, new RandomStream(8), new DNA[0]);
+        evolver.setVerbose(false);
+        return evolver;
+    }
+
+    static DNA[] evolve(EvolveOptimalResistors evolver) {
+        evolver.evolve();
+        return evolver.mostFitDNA(10);
+    }
+
+    static void assertSameDNA(DNA expected, DNA actual) {
+        assertEquals(expected.getFitness(), actual.getFitness(), 0);
+        assertEquals(expected.getTotalResistance(), actual.getTotalResistance(), 0);
+        assertEquals(expected.getSize(), actual.getSize());
+        assertSameChromosomes(expected, actual);
+    }
+
+    static void assertSameChromosomes(DNA expected, DNA actual) {
+        assertArrayEquals(expected.getSurvivers(), actual.getSurvivers());
+        assertArrayEquals(expected.getReceivers(), actual.getReceivers());
+        assertArrayEquals(expected.getGivers(), actual.getGivers());
+        assertArrayEquals(expected.getConnections(), actual.getConnections());
+    }
+}
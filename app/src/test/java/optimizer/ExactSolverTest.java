@@ -0,0 +1,52 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the exact solver finds known optimal circuits and returns every circuit once.
+ */
+public class ExactSolverTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{10, 22, 47, 100, 220},
+            new int[]{2, 1, 2, 1, 3});
+
+    @Test
+    public void mostFitDNA_findsExactMatches() {
+        // 10 + 22
+        DNA best = new ExactSolver(INVENTORY, 32, 10, 4).mostFitDNA(1)[0];
+        assertEquals(32, best.getTotalResistance(), 1e-9);
+        assertEquals(2, best.getSize());
+        // 220 || 220
+        best = new ExactSolver(INVENTORY, 110, 10, 4).mostFitDNA(1)[0];
+        assertEquals(110, best.getTotalResistance(), 1e-9);
+        assertEquals(2, best.getSize());
+        // 100 + 10 + 10 needs both 10s.
+        best = new ExactSolver(INVENTORY, 120, 10, 4).mostFitDNA(1)[0];
+        assertEquals(120, best.getTotalResistance(), 1e-9);
+        assertEquals(3, best.getSize());
+    }
+
+    @Test
+    public void mostFitDNA_sortedAndUnique() {
+        ExactSolver solver = new ExactSolver(INVENTORY, 77, 30, 4);
+        CollapseKernel kernel = new CollapseKernel(solver.getAvailableResistors());
+        DNA[] top = solver.mostFitDNA(50);
+        assertEquals(50, top.length);
+        Set<Long> hashes = new HashSet<>();
+        for(int i = 0; i < top.length; i ++) {
+            DNA dna = top[i];
+            assertEquals(i + 1, dna.getRank());
+            if(i > 0)
+                assertTrue(top[i - 1].getFitness() >= dna.getFitness());
+            kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+            assertEquals(dna.getTotalResistance(), kernel.getTotalResistance(), dna.getTotalResistance() * 1e-12);
+            assertEquals(dna.getSize(), kernel.getSize());
+            assertTrue(hashes.add(kernel.structuralHash(dna)));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the fitness cache never changes a search's result, and how its table handles
+ * colliding keys.
+ */
+public class FitnessCacheTest {
+    @Test
+    public void evolve_sameWithAndWithoutCache() {
+        for(int parallelism = 1; parallelism <= 3; parallelism += 2) {
+            EvolveOptimalResistors cached = EvolveOptimalResistorsTest.newEvolver(parallelism);
+            EvolveOptimalResistors uncached = EvolveOptimalResistorsTest.newEvolver(parallelism);
+            uncached.setFitnessCache(false);
+            cached.evolve();
+            uncached.evolve();
+            assertTrue(cached.getCacheHits() > 0);
+            assertEquals(0, uncached.getCacheHits() + uncached.getCacheMisses());
+            assertEquals(cached.getStopReason(), uncached.getStopReason());
+
+            DNA[] expected = uncached.mostFitDNA(-1);
+            DNA[] actual = cached.mostFitDNA(-1);
+            assertEquals(expected.length, actual.length);
+            for(int i = 0; i < expected.length; i ++)
+                EvolveOptimalResistorsTest.assertSameDNA(expected[i], actual[i]);
+            expected = uncached.getHallOfFame().toArray();
+            actual = cached.getHallOfFame().toArray();
+            assertEquals(expected.length, actual.length);
+            for(int i = 0; i < expected.length; i ++)
+                EvolveOptimalResistorsTest.assertSameDNA(expected[i], actual[i]);
+        }
+    }
+
+    @Test
+    public void get_missesThenHits() {
+        FitnessCache cache = new FitnessCache(8);
+        assertFalse(cache.get(42));
+        cache.put(42, 320, 2);
+        assertTrue(cache.get(42));
+        assertEquals(320, cache.getTotalResistance(), 0);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void put_probesPastCollisions() {
+        // Every key has home slot 3 of 8, so they fill slots 3 to 7.
+        FitnessCache cache = new FitnessCache(8);
+        for(int k = 1; k <= 5; k ++)
+            cache.put(collidingKey(k, 3), k * 10, k);
+        for(int k = 1; k <= 5; k ++)
+            assertHit(cache, collidingKey(k, 3), k * 10, k);
+    }
+
+    @Test
+    public void put_evictsHomeWhenProbesAreFull() {
+        FitnessCache cache = new FitnessCache(8);
+        for(int k = 1; k <= 6; k ++)
+            cache.put(collidingKey(k, 3), k * 10, k);
+        // The sixth key found no free slot and replaced the first one.
+        assertFalse(cache.get(collidingKey(1, 3)));
+        for(int k = 2; k <= 6; k ++)
+            assertHit(cache, collidingKey(k, 3), k * 10, k);
+    }
+
+    @Test
+    public void put_probesWrapAround() {
+        // Home slot 6 of 8 probes slots 6, 7, 0, 1 and 2.
+        FitnessCache cache = new FitnessCache(8);
+        for(int k = 1; k <= 5; k ++)
+            cache.put(collidingKey(k, 6), k * 10, k);
+        for(int k = 1; k <= 5; k ++)
+            assertHit(cache, collidingKey(k, 6), k * 10, k);
+        // Keys at home in the wrapped slots still find theirs.
+        cache.put(collidingKey(7, 0), 70, 7);
+        assertHit(cache, collidingKey(7, 0), 70, 7);
+    }
+
+    @Test
+    public void constructor_roundsCapacityUp() {
+        // 5 rounds up to 8 slots, so keys 8 apart collide and 4 apart do not.
+        FitnessCache cache = new FitnessCache(5);
+        cache.put(collidingKey(1, 1), 10, 1);
+        cache.put(collidingKey(1, 5), 50, 5);
+        assertHit(cache, collidingKey(1, 1), 10, 1);
+        assertHit(cache, collidingKey(1, 5), 50, 5);
+    }
+
+    @Test
+    public void genomeHash_neverEmpty() {
+        long hash = FitnessCache.genomeHash(new long[0], 0, 0, new int[0], new int[0], new int[0], 0, 0);
+        assertNotEquals(0, hash);
+    }
+
+    @Test
+    public void genomeHash_dependsOnEveryChromosome() {
+        long[] survivors = {0b1011};
+        int[] receivers = {0, 1};
+        int[] givers = {1, 3};
+        int[] connections = {0, 1};
+        long hash = FitnessCache.genomeHash(survivors, 0, 1, receivers, givers, connections, 0, 2);
+        assertNotEquals(hash, FitnessCache.genomeHash(new long[]{0b1111}, 0, 1, receivers, givers, connections, 0, 2));
+        assertNotEquals(hash, FitnessCache.genomeHash(survivors, 0, 1, new int[]{1, 1}, givers, connections, 0, 2));
+        assertNotEquals(hash, FitnessCache.genomeHash(survivors, 0, 1, receivers, new int[]{1, 2}, connections, 0, 2));
+        assertNotEquals(hash, FitnessCache.genomeHash(survivors, 0, 1, receivers, givers, new int[]{1, 1}, 0, 2));
+        assertNotEquals(hash, FitnessCache.genomeHash(survivors, 0, 1, receivers, givers, connections, 0, 1));
+    }
+
+    /*
+    Distinct nonzero keys with the same home slot in a table of 8.
+     */
+    private static long collidingKey(int k, int home) {
+        return ((long) k << 3) | home;
+    }
+
+    private static void assertHit(FitnessCache cache, long key, double totalResistance, int size) {
+        assertTrue(cache.get(key));
+        assertEquals(totalResistance, cache.getTotalResistance(), 0);
+        assertEquals(size, cache.getSize());
+    }
+}
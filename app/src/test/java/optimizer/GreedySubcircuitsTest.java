@@ -0,0 +1,101 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that greedy seeds stay within their budget and the inventory, and do not depend on the
+ * number of threads.
+ */
+public class GreedySubcircuitsTest {
+    /**
+     * Enough distinct resistances for the starts to be split over threads.
+     */
+    private static final Inventory INVENTORY = manyResistances(300);
+
+    @Test
+    public void generateDNA_sameForEveryParallelism() {
+        GreedySubcircuits sequential = new GreedySubcircuits(INVENTORY, 3333);
+        sequential.generateDNA(300, 1);
+        GreedySubcircuits parallel = new GreedySubcircuits(INVENTORY, 3333);
+        parallel.generateDNA(300, 4);
+        DNA[] expected = sequential.getDNA();
+        DNA[] actual = parallel.getDNA();
+        assertTrue(expected.length > 0);
+        assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i ++)
+            EvolveOptimalResistorsTest.assertSameChromosomes(expected[i], actual[i]);
+    }
+
+    @Test
+    public void generateDNA_staysWithinBudgetAndInventory() {
+        for(int budget : new int[]{1, 17, 300, 1000}) {
+            GreedySubcircuits greedy = new GreedySubcircuits(INVENTORY, 3333);
+            greedy.generateDNA(budget, 2);
+            DNA[] seeds = greedy.getDNA();
+            assertTrue(seeds.length > 0);
+            assertTrue(seeds.length <= budget);
+            assertWithinInventory(greedy.getFormattedResistances(), seeds);
+        }
+    }
+
+    @Test
+    public void generateDNA_fewResistors() {
+        Inventory inventory = new Inventory(new double[]{10, 22, 47, 100}, new int[]{1, 2, 1, 3});
+        GreedySubcircuits greedy = new GreedySubcircuits(inventory, 61);
+        greedy.generateDNA(10);
+        DNA[] seeds = greedy.getDNA();
+        // One start per distinct resistance at most.
+        assertTrue(seeds.length > 0 && seeds.length <= 4);
+        assertWithinInventory(greedy.getFormattedResistances(), seeds);
+    }
+
+    @Test
+    public void generateDNA_zeroBudget() {
+        GreedySubcircuits greedy = new GreedySubcircuits(INVENTORY, 3333);
+        greedy.generateDNA(0, 4);
+        assertEquals(0, greedy.getDNA().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void generateDNA_rejectsNegativeBudget() {
+        new GreedySubcircuits(INVENTORY, 3333).generateDNA(-1);
+    }
+
+    /*
+    Every seed builds a circuit out of all of its survivors, each resistor used once, and no two
+    seeds build the same circuit.
+     */
+    private static void assertWithinInventory(Resistor[] resistors, DNA[] seeds) {
+        CollapseKernel kernel = new CollapseKernel(resistors);
+        Set<Long> circuits = new HashSet<>();
+        for(DNA seed : seeds) {
+            long[] survivors = seed.getSurvivers();
+            int numSurvivors = 0;
+            for(long word : survivors)
+                numSurvivors += Long.bitCount(word);
+            assertEquals(numSurvivors, seed.getNumSurvivors());
+            for(int w = 0; w < survivors.length; w ++)
+                for(int bit = 0; bit < 64; bit ++)
+                    if((survivors[w] & (1L << bit)) != 0)
+                        assertTrue(w * 64 + bit < resistors.length);
+            kernel.collapse(survivors, seed.getReceivers(), seed.getGivers(), seed.getConnections());
+            assertEquals(numSurvivors, kernel.getSize());
+            assertTrue(circuits.add(kernel.structuralHash(seed)));
+        }
+    }
+
+    private static Inventory manyResistances(int numDistinct) {
+        double[] resistances = new double[numDistinct];
+        int[] counts = new int[numDistinct];
+        for(int i = 0; i < numDistinct; i ++) {
+            resistances[i] = 1 + i * 7.5;
+            counts[i] = 1 + i % 3;
+        }
+        return new Inventory(resistances, counts);
+    }
+}
@@ -0,0 +1,96 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the hall of fame keeps the most fit distinct circuits in order, one or many at a time.
+ */
+public class HallOfFameTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{1, 2.2, 4.7, 10, 22, 47, 100, 220, 470, 1000},
+            new int[]{3, 3, 3, 3, 3, 3, 3, 3, 3, 3});
+
+    @Test
+    public void offer_keepsMostFitInOrder() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        DNA[] population = evaluated(resistors, 200, 1);
+        HallOfFame hallOfFame = new HallOfFame(8, resistors);
+        for(DNA one : population)
+            hallOfFame.offer(one);
+        assertEquals(8, hallOfFame.size());
+        DNA[] members = hallOfFame.toArray();
+        CollapseKernel kernel = new CollapseKernel(resistors);
+        for(int i = 0; i < members.length; i ++) {
+            assertEquals(i + 1, members[i].getRank());
+            if(i > 0)
+                assertTrue(members[i - 1].getFitness() >= members[i].getFitness());
+            for(int j = 0; j < i; j ++)
+                assertNotEquals(kernel.structuralHash(members[j]), kernel.structuralHash(members[i]));
+        }
+        // Nothing left out beats the least fit member, unless it duplicates a member.
+        assertEquals(members[members.length - 1].getFitness(), hallOfFame.threshold(), 0);
+        for(DNA one : population)
+            assertEquals(-1, hallOfFame.offer(one));
+    }
+
+    @Test
+    public void offer_rejectsDuplicates() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        DNA one = evaluated(resistors, 1, 2)[0];
+        HallOfFame hallOfFame = new HallOfFame(4, resistors);
+        assertEquals(Double.NEGATIVE_INFINITY, hallOfFame.threshold(), 0);
+        assertEquals(0, hallOfFame.offer(one));
+        assertEquals(-1, hallOfFame.offer(one.copy()));
+        assertEquals(1, hallOfFame.size());
+    }
+
+    @Test
+    public void offerAll_sameAsOfferingOneByOne() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        DNA[] population = evaluated(resistors, 200, 3);
+        HallOfFame oneByOne = new HallOfFame(16, resistors);
+        for(DNA one : population)
+            oneByOne.offer(one);
+        HallOfFame batched = new HallOfFame(16, resistors);
+        assertTrue(batched.offerAll(population, 100) >= 0);
+        batched.offerAll(Arrays.copyOfRange(population, 100, 200), 100);
+        DNA[] expected = oneByOne.toArray();
+        DNA[] actual = batched.toArray();
+        assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i ++)
+            EvolveOptimalResistorsTest.assertSameDNA(expected[i], actual[i]);
+    }
+
+    @Test
+    public void offerAll_returnsBestPosition() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        HallOfFame hallOfFame = new HallOfFame(3, resistors);
+        DNA[] population = evaluated(resistors, 50, 4);
+        // The most fit of the batch gets in at the top of an empty hall of fame.
+        assertEquals(0, hallOfFame.offerAll(population, population.length));
+        assertEquals(3, hallOfFame.size());
+        // Offered again, nothing gets in.
+        assertEquals(-1, hallOfFame.offerAll(population, population.length));
+        assertEquals(-1, hallOfFame.offerAll(population, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsZeroCapacity() {
+        new HallOfFame(0, INVENTORY.toResistors());
+    }
+
+    /*
+    Random DNA with their fitness evaluated, as the first generation of a seeded evolver.
+     */
+    static DNA[] evaluated(Resistor[] resistors, int popSize, long seed) {
+        EvolveOptimalResistors evolver = new EvolveOptimalResistors(resistors, 333, 50, popSize, 10, 0, 1,
+                new RandomStream(seed), new DNA[0]);
+        evolver.setVerbose(false);
+        evolver.evaluateFitness();
+        return evolver.mostFitDNA(-1);
+    }
+}
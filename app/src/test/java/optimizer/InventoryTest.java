@@ -0,0 +1,103 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how an inventory becomes available resistors, and that runs of equal resistors are found and
+ * canonicalized without changing the circuit.
+ */
+public class InventoryTest {
+    private static final Resistor[] AVAILABLE = new Inventory(
+            new double[]{10, 22, 47, 100, 220, 470},
+            new int[]{3, 1, 40, 2, 70, 1}).toResistors(100);
+
+    @Test
+    public void constructor_mergesAndSorts() {
+        Inventory inventory = new Inventory(new double[]{47, 10, 47, 22}, new int[]{2, 1, 3, 5});
+        assertEquals(3, inventory.size());
+        assertEquals(10, inventory.getResistance(0), 0);
+        assertEquals(22, inventory.getResistance(1), 0);
+        assertEquals(47, inventory.getResistance(2), 0);
+        assertEquals(5, inventory.getCount(2));
+        assertEquals(11, inventory.getTotalCount());
+    }
+
+    @Test
+    public void toResistors_capsCopies() {
+        Inventory inventory = new Inventory(new double[]{10, 22}, new int[]{1000, 3});
+        Resistor[] resistors = inventory.toResistors();
+        assertEquals(Inventory.DEFAULT_MAX_COPIES + 3, resistors.length);
+        for(int i = 1; i < resistors.length; i ++)
+            assertTrue(resistors[i - 1].getResistance() <= resistors[i].getResistance());
+        assertEquals(4, inventory.toResistors(2).length);
+    }
+
+    @Test
+    public void contentHash_ignoresOrder() {
+        Inventory a = new Inventory(new double[]{10, 22, 47}, new int[]{1, 2, 3});
+        Inventory b = new Inventory(new double[]{47, 10, 22}, new int[]{3, 1, 2});
+        Inventory c = new Inventory(new double[]{10, 22, 47}, new int[]{1, 2, 4});
+        assertEquals(a.contentHash(), b.contentHash());
+        assertNotEquals(a.contentHash(), c.contentHash());
+    }
+
+    @Test
+    public void findRuns_coversEqualResistors() {
+        int[] runs = Inventory.findRuns(AVAILABLE);
+        assertArrayEquals(new int[]{0, 3, 4, 44, 44, 46, 46, 116}, runs);
+    }
+
+    @Test
+    public void canonicalizeRuns_keepsCountsAndCircuit() {
+        int[] runs = Inventory.findRuns(AVAILABLE);
+        CollapseKernel kernel = new CollapseKernel(AVAILABLE);
+        RandomStream random = new RandomStream(3);
+        for(int i = 0; i < 1000; i ++) {
+            DNA dna = new DNA(AVAILABLE.length, 100, random);
+            long[] survivors = dna.getSurvivers().clone();
+            DNA.canonicalizeRuns(survivors, 0, runs);
+
+            for(int r = 0; r < runs.length; r += 2) {
+                int count = count(dna.getSurvivers(), runs[r], runs[r + 1]);
+                assertEquals(count, count(survivors, runs[r], runs[r + 1]));
+                assertEquals(count, count(survivors, runs[r], runs[r] + count));
+            }
+            assertEquals(count(dna.getSurvivers(), 0, AVAILABLE.length), count(survivors, 0, AVAILABLE.length));
+
+            kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+            double resistance = kernel.getTotalResistance();
+            int size = kernel.getSize();
+            kernel.collapse(survivors, dna.getReceivers(), dna.getGivers(), dna.getConnections());
+            assertEquals(resistance, kernel.getTotalResistance(), 0);
+            assertEquals(size, kernel.getSize());
+        }
+    }
+
+    @Test
+    public void canonicalizeRuns_atOffset() {
+        int[] runs = Inventory.findRuns(AVAILABLE);
+        int numWords = DNA.numWords(AVAILABLE.length);
+        RandomStream random = new RandomStream(4);
+        DNA dna = new DNA(AVAILABLE.length, 100, random);
+        long[] alone = dna.getSurvivers().clone();
+        DNA.canonicalizeRuns(alone, 0, runs);
+
+        long[] packed = new long[numWords * 2];
+        System.arraycopy(dna.getSurvivers(), 0, packed, numWords, numWords);
+        DNA.canonicalizeRuns(packed, numWords, runs);
+        for(int w = 0; w < numWords; w ++) {
+            assertEquals(0, packed[w]);
+            assertEquals(alone[w], packed[numWords + w]);
+        }
+    }
+
+    private static int count(long[] survivors, int from, int to) {
+        int count = 0;
+        for(int i = from; i < to; i ++)
+            if((survivors[i >>> 6] & (1L << (i & 63))) != 0)
+                count ++;
+        return count;
+    }
+}
@@ -0,0 +1,52 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a single island evolves exactly like a plain evolver with the same seed.
+ */
+public class IslandOptimizerTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{1, 2.2, 4.7, 10, 22, 47, 100, 220, 470, 1000, 2200, 4700, 10000},
+            new int[]{4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4});
+
+    @Test
+    public void oneIsland_sameAsPlainEvolution() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        IslandOptimizer islands = new IslandOptimizer(resistors, 777, 60, 300, 10, 30, 1, new RandomStream(5),
+                new DNA[0]);
+        islands.setStoppingPolicy(StoppingPolicy.stagnation(8));
+        islands.evolve();
+
+        // An island gets the first stream split from the optimizer's, and offers to a hall of fame
+        // as large as the optimizer's.
+        EvolveOptimalResistors plain = new EvolveOptimalResistors(resistors, 777, 60, 300, 10, 30, 1,
+                new RandomStream(5).split(), new DNA[0]);
+        plain.setVerbose(false);
+        plain.setStoppingPolicy(StoppingPolicy.stagnation(8));
+        HallOfFame hallOfFame = new HallOfFame(islands.getHallOfFame().getCapacity(), resistors);
+        plain.setHallOfFame(hallOfFame);
+        plain.evolve();
+
+        assertEquals(plain.getStopReason(), islands.getStopReason());
+        DNA[] expected = hallOfFame.toArray();
+        DNA[] actual = islands.mostFitDNA(expected.length);
+        assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i ++)
+            EvolveOptimalResistorsTest.assertSameDNA(expected[i], actual[i]);
+    }
+
+    @Test
+    public void severalIslands_shareOneHallOfFame() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        IslandOptimizer islands = new IslandOptimizer(resistors, 777, 60, 300, 10, 20, 3, new RandomStream(5),
+                new DNA[0]);
+        islands.evolve();
+        DNA[] mostFit = islands.mostFitDNA(10);
+        assertEquals(10, mostFit.length);
+        for(int i = 1; i < mostFit.length; i ++)
+            assertTrue(mostFit[i - 1].getFitness() >= mostFit[i].getFitness());
+    }
+}
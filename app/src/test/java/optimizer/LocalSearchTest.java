@@ -0,0 +1,73 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that refined DNA are evaluated correctly, more fit and canonical.
+ */
+public class LocalSearchTest {
+    private static final Resistor[] AVAILABLE = new Inventory(
+            new double[]{10, 22, 47, 100, 220, 470, 1000, 4700},
+            new int[]{3, 2, 4, 1, 2, 3, 2, 1}).toResistors();
+    private static final double DESIRED = 1234;
+    private static final int SIZE_PRIORITY = 30;
+
+    @Test
+    public void refine_roundTrips() {
+        LocalSearch search = new LocalSearch(AVAILABLE, DESIRED, SIZE_PRIORITY);
+        CollapseKernel kernel = new CollapseKernel(AVAILABLE);
+        int[] runs = Inventory.findRuns(AVAILABLE);
+        RandomStream random = new RandomStream(6);
+        int numRefined = 0;
+        for(int i = 0; i < 500; i ++) {
+            DNA dna = new DNA(AVAILABLE.length, 100, random);
+            evaluate(dna, kernel);
+            long[] survivors = dna.getSurvivers().clone();
+            DNA refined = search.refine(dna);
+            assertArrayEquals(survivors, dna.getSurvivers());
+            if(refined == dna)
+                continue;
+            numRefined ++;
+
+            double fitness = refined.getFitness();
+            double resistance = refined.getTotalResistance();
+            int size = refined.getSize();
+            evaluate(refined, kernel);
+            assertEquals(refined.getTotalResistance(), resistance, resistance * 1e-12);
+            assertEquals(refined.getSize(), size);
+            assertEquals(refined.getFitness(), fitness, fitness * 1e-12);
+            assertTrue(fitness > dna.getFitness());
+
+            long[] canonical = refined.getSurvivers().clone();
+            DNA.canonicalizeRuns(canonical, 0, runs);
+            assertArrayEquals(canonical, refined.getSurvivers());
+        }
+        assertTrue(numRefined > 0);
+    }
+
+    @Test
+    public void refine_keepsBestPossible() {
+        // A single 1000 with a high size priority can not be improved on.
+        long[] survivors = new long[DNA.numWords(AVAILABLE.length)];
+        survivors[0] = 1L << 15;
+        assertEquals(1000, AVAILABLE[15].getResistance(), 0);
+        DNA dna = new DNA(survivors, AVAILABLE.length, 1, new int[0], new int[0], new int[0]);
+        LocalSearch search = new LocalSearch(AVAILABLE, 1000, 90);
+        evaluate(dna, 1000, 90, new CollapseKernel(AVAILABLE));
+        assertSame(dna, search.refine(dna));
+    }
+
+    private static void evaluate(DNA dna, CollapseKernel kernel) {
+        evaluate(dna, DESIRED, SIZE_PRIORITY, kernel);
+    }
+
+    private static void evaluate(DNA dna, double desired, int sizePriority, CollapseKernel kernel) {
+        kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+        dna.setTotalResistance(kernel.getTotalResistance());
+        dna.setSize(kernel.getSize());
+        dna.setFitness(EvolveOptimalResistors.inverseWeightedSum(desired, sizePriority,
+                kernel.getTotalResistance(), kernel.getSize()));
+    }
+}
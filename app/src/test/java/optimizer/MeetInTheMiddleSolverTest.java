@@ -0,0 +1,92 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the meet-in-the-middle solver against the exact solver, and that it never uses a resistor
+ * more often than the inventory holds it.
+ */
+public class MeetInTheMiddleSolverTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{10, 22, 47, 100, 220, 470, 1000},
+            new int[]{2, 1, 3, 1, 2, 1, 4});
+
+    @Test
+    public void mostFitDNA_agreesWithExactSolver() {
+        AchievableIndex index = new AchievableIndex(INVENTORY);
+        assertEquals(3, index.getMaxParts());
+        MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver(index);
+        CollapseKernel kernel = new CollapseKernel(index.getAvailableResistors());
+        double[] targets = {5, 33.3, 123, 777, 1500, 4321};
+        int numTop = 20;
+        for(double target : targets) {
+            DNA[] top = solver.mostFitDNA(target, 40, numTop);
+            DNA[] exact = new ExactSolver(INVENTORY, target, 40, 4).mostFitDNA(numTop);
+            assertEquals(numTop, top.length);
+            Set<Long> exactHashes = new HashSet<>();
+            for(DNA dna : exact)
+                exactHashes.add(kernel.structuralHash(dna));
+            for(int i = 0; i < numTop; i ++) {
+                // Every circuit of up to 4 parts is two indexed circuits, so none is missed. The two
+                // solvers add resistances in different orders, which can differ in the last bit.
+                assertTrue(top[i].getFitness() >= exact[i].getFitness() * (1 - 1e-12));
+                if(top[i].getSize() <= 4)
+                    assertTrue(exactHashes.contains(kernel.structuralHash(top[i])));
+            }
+        }
+    }
+
+    @Test
+    public void mostFitDNA_evaluatedAndWithinInventory() {
+        AchievableIndex index = new AchievableIndex(INVENTORY);
+        MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver(index);
+        Resistor[] available = index.getAvailableResistors();
+        CollapseKernel kernel = new CollapseKernel(available);
+        RandomStream random = new RandomStream(12);
+        for(int t = 0; t < 50; t ++) {
+            double target = 1 + random.nextDouble() * 5000;
+            for(DNA dna : solver.mostFitDNA(target, 20, 10)) {
+                kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+                assertEquals(dna.getTotalResistance(), kernel.getTotalResistance(), dna.getTotalResistance() * 1e-12);
+                assertEquals(dna.getSize(), kernel.getSize());
+                assertTrue(dna.getSize() <= 2 * index.getMaxParts());
+                assertWithinInventory(dna, available, INVENTORY);
+            }
+        }
+    }
+
+    @Test
+    public void mostFitDNA_neverReusesAResistor() {
+        // 100 + 100 and 100 || 100 would need two 100s.
+        Inventory inventory = new Inventory(new double[]{100, 470}, new int[]{1, 3});
+        AchievableIndex index = new AchievableIndex(inventory);
+        MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver(index);
+        SubnetworkTable table = index.getTable();
+        int hundred = index.nearest(100, 1);
+        assertFalse(table.canCombine(table.getParts(hundred), table.getParts(hundred)));
+
+        for(double target : new double[]{200, 50}) {
+            DNA[] top = solver.mostFitDNA(target, 0, 10);
+            assertNotEquals(target, top[0].getTotalResistance(), 1e-6);
+            for(DNA dna : top)
+                assertWithinInventory(dna, index.getAvailableResistors(), inventory);
+        }
+    }
+
+    private static void assertWithinInventory(DNA dna, Resistor[] available, Inventory inventory) {
+        // Every part is a physical resistor of its own.
+        assertEquals(dna.getSize(), dna.getNumSurvivors());
+        for(int v = 0; v < inventory.size(); v ++) {
+            int used = 0;
+            for(int i = 0; i < available.length; i ++)
+                if(dna.isSurvivor(i) && available[i].getResistance() == inventory.getResistance(v))
+                    used ++;
+            assertTrue(used <= inventory.getCount(v));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the packed population stores DNA faithfully and evolves like DNA Objects do.
+ */
+public class PackedPopulationTest {
+    private static final Resistor[] AVAILABLE = new Inventory(
+            new double[]{1, 2.2, 4.7, 10, 22, 47, 100, 220, 470, 1000, 2200, 4700, 10000},
+            new int[]{4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4}).toResistors();
+
+    @Test
+    public void fill_roundTrips() {
+        RandomStream random = new RandomStream(9);
+        DNA[] pop = new DNA[300];
+        for(int i = 0; i < pop.length; i ++)
+            pop[i] = new DNA(AVAILABLE.length, 100, random);
+        PackedPopulation packed = new PackedPopulation(pop.length, AVAILABLE.length);
+        packed.fill(pop);
+        DNA[] copies = packed.toDNA();
+        assertEquals(pop.length, copies.length);
+        for(int i = 0; i < pop.length; i ++)
+            EvolveOptimalResistorsTest.assertSameChromosomes(pop[i], copies[i]);
+    }
+
+    @Test
+    public void evolve_sameAsObjects() {
+        for(int parallelism = 1; parallelism <= 3; parallelism += 2) {
+            EvolveOptimalResistors objects = EvolveOptimalResistorsTest.newEvolver(parallelism);
+            EvolveOptimalResistors packed = EvolveOptimalResistorsTest.newEvolver(parallelism);
+            packed.setPackedPopulation(true);
+            objects.evolve();
+            packed.evolve();
+
+            DNA[] expected = objects.mostFitDNA(-1);
+            DNA[] actual = packed.mostFitDNA(-1);
+            assertEquals(expected.length, actual.length);
+            for(int i = 0; i < expected.length; i ++)
+                EvolveOptimalResistorsTest.assertSameDNA(expected[i], actual[i]);
+
+            DNA[] expectedFame = objects.getHallOfFame().toArray();
+            DNA[] actualFame = packed.getHallOfFame().toArray();
+            assertEquals(expectedFame.length, actualFame.length);
+            for(int i = 0; i < expectedFame.length; i ++)
+                EvolveOptimalResistorsTest.assertSameDNA(expectedFame[i], actualFame[i]);
+        }
+    }
+}
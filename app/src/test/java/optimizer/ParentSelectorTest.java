@@ -0,0 +1,96 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every selector picks parents as often as their fitness says.
+ */
+public class ParentSelectorTest {
+    private static final double[] FITNESS = {1, 2, 3, 4, 0, 10};
+    private static final int NUM_DRAWS = 200000;
+
+    @Test
+    public void roulette_matchesWeights() {
+        assertFrequencies(ParentSelector.ROULETTE, FITNESS, 0.005);
+    }
+
+    @Test
+    public void alias_matchesWeights() {
+        assertFrequencies(ParentSelector.ALIAS, FITNESS, 0.005);
+    }
+
+    @Test
+    public void stochasticUniversal_matchesWeightsWithinOne() {
+        int[] counts = draw(ParentSelector.STOCHASTIC_UNIVERSAL, FITNESS, NUM_DRAWS);
+        double total = sum(FITNESS);
+        for(int i = 0; i < FITNESS.length; i ++)
+            assertEquals(NUM_DRAWS * FITNESS[i] / total, counts[i], 1);
+    }
+
+    @Test
+    public void allZero_selectsUniformly() {
+        double[] zero = new double[5];
+        assertFrequencies(ParentSelector.ROULETTE, zero, 0.005);
+        assertFrequencies(ParentSelector.ALIAS, zero, 0.005);
+        int[] counts = draw(ParentSelector.STOCHASTIC_UNIVERSAL, zero, NUM_DRAWS);
+        for(int count : counts)
+            assertEquals(NUM_DRAWS / zero.length, count, 1);
+    }
+
+    @Test
+    public void singleIndividual_alwaysSelected() {
+        for(int strategy = ParentSelector.ROULETTE; strategy <= ParentSelector.STOCHASTIC_UNIVERSAL; strategy ++) {
+            assertEquals(1000, draw(strategy, new double[]{0.5}, 1000)[0]);
+            assertEquals(1000, draw(strategy, new double[]{0}, 1000)[0]);
+        }
+    }
+
+    @Test
+    public void sameSeed_sameParents() {
+        for(int strategy = ParentSelector.ROULETTE; strategy <= ParentSelector.STOCHASTIC_UNIVERSAL; strategy ++) {
+            ParentSelector a = ParentSelector.create(strategy);
+            ParentSelector b = ParentSelector.create(strategy);
+            RandomStream randomA = new RandomStream(11);
+            RandomStream randomB = new RandomStream(11);
+            a.prepare(FITNESS, sum(FITNESS), 100, randomA);
+            b.prepare(FITNESS, sum(FITNESS), 100, randomB);
+            for(int i = 0; i < 100; i ++)
+                assertEquals(a.select(i, randomA), b.select(i, randomB));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_unknownStrategy() {
+        ParentSelector.create(3);
+    }
+
+    private static void assertFrequencies(int strategy, double[] fitness, double delta) {
+        int[] counts = draw(strategy, fitness, NUM_DRAWS);
+        double total = sum(fitness);
+        for(int i = 0; i < fitness.length; i ++) {
+            double expected = total > 0 ? fitness[i] / total : 1.0 / fitness.length;
+            assertEquals(expected, (double) counts[i] / NUM_DRAWS, delta);
+            if(expected == 0)
+                assertEquals(0, counts[i]);
+        }
+    }
+
+    private static int[] draw(int strategy, double[] fitness, int numDraws) {
+        ParentSelector selector = ParentSelector.create(strategy);
+        RandomStream random = new RandomStream(10);
+        selector.prepare(fitness, sum(fitness), numDraws, random);
+        int[] counts = new int[fitness.length];
+        for(int i = 0; i < numDraws; i ++)
+            counts[selector.select(i, random)] ++;
+        return counts;
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for(double value : values)
+            sum += value;
+        return sum;
+    }
+}
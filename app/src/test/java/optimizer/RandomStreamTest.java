@@ -0,0 +1,68 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that streams are reproducible from their seed and that split and restarted streams are too.
+ */
+public class RandomStreamTest {
+    @Test
+    public void equalSeeds_equalSequences() {
+        RandomStream a = new RandomStream(42);
+        RandomStream b = new RandomStream(42);
+        for(int i = 0; i < 100; i ++)
+            assertEquals(a.nextLong(), b.nextLong());
+    }
+
+    @Test
+    public void split_reproducibleAndIndependent() {
+        RandomStream a = new RandomStream(42).split();
+        RandomStream b = new RandomStream(42).split();
+        RandomStream parent = new RandomStream(42);
+        parent.split();
+        int numEqual = 0;
+        for(int i = 0; i < 100; i ++) {
+            long value = a.nextLong();
+            assertEquals(value, b.nextLong());
+            if(value == parent.nextLong())
+                numEqual ++;
+        }
+        assertEquals(0, numEqual);
+    }
+
+    @Test
+    public void restart_dependsOnlyOnBaseAndIndex() {
+        RandomStream a = new RandomStream(1);
+        RandomStream b = new RandomStream(2);
+        b.nextLong();
+        a.restart(7, 3);
+        b.restart(7, 3);
+        for(int i = 0; i < 100; i ++)
+            assertEquals(a.nextLong(), b.nextLong());
+
+        a.restart(7, 3);
+        b.restart(7, 4);
+        assertNotEquals(a.nextLong(), b.nextLong());
+    }
+
+    @Test
+    public void nextInt_staysInBounds() {
+        RandomStream random = new RandomStream(5);
+        int[] counts = new int[7];
+        for(int i = 0; i < 70000; i ++)
+            counts[random.nextInt(7)] ++;
+        for(int count : counts)
+            assertEquals(10000, count, 500);
+        for(int i = 0; i < 1000; i ++) {
+            double value = random.nextDouble();
+            assertTrue(value >= 0 && value < 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nextInt_needsPositiveBound() {
+        new RandomStream(5).nextInt(0);
+    }
+}
@@ -0,0 +1,175 @@
+package optimizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks when each stopping policy stops, and that policies forget earlier runs on reset().
+ */
+public class StoppingPolicyTest {
+    @Test
+    public void stagnation_stopsAfterWindowWithoutImprovement() {
+        StoppingPolicy policy = StoppingPolicy.stagnation(3);
+        EvolveOptimalResistors evolver = newEvolver(100, 100, 100, 220);
+        policy.reset();
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 0, 1, 0, 1)));
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 1, 2, 0, 1)));
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 2, 2, 0, 1)));
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 3, 2, 0, 1)));
+        // An improvement starts the window over.
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 4, 3, 0, 1)));
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 5, 3, 0, 1)));
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 6, 3, 0, 1)));
+        assertEquals(StoppingPolicy.STAGNATION, policy.check(best(evolver, 7, 3, 0, 1)));
+    }
+
+    @Test
+    public void stagnation_forgetsBestOnReset() {
+        StoppingPolicy policy = StoppingPolicy.stagnation(1);
+        EvolveOptimalResistors evolver = newEvolver(100, 100, 100, 220);
+        policy.reset();
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 0, 5, 0, 1)));
+        policy.reset();
+        // Without the reset a worse first generation would count as stagnant.
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 0, 1, 0, 1)));
+        assertEquals(StoppingPolicy.STAGNATION, policy.check(best(evolver, 1, 1, 0, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stagnation_rejectsEmptyWindow() {
+        StoppingPolicy.stagnation(0);
+    }
+
+    @Test
+    public void exactMatch_stopsOnlyAtMinimalSize() {
+        // 100 is available as it is.
+        assertExactMatch(newEvolver(100, 100, 100, 220), 100, 1);
+        // 320 = 100 + 220, and 50 = 100 || 100 needs both copies of 100.
+        assertExactMatch(newEvolver(320, 100, 100, 220), 320, 2);
+        assertExactMatch(newEvolver(50, 100, 100, 220), 50, 2);
+        // 420 = 100 + 100 + 220 needs all three.
+        assertExactMatch(newEvolver(420, 100, 100, 220), 420, 3);
+    }
+
+    @Test
+    public void exactMatch_ignoresInexactMatches() {
+        EvolveOptimalResistors evolver = newEvolver(100, 100, 100, 220);
+        StoppingPolicy policy = StoppingPolicy.exactMatch();
+        policy.reset();
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 0, 1, 100.1, 1)));
+        // Rounding in series and parallel resistances still counts as exact.
+        assertEquals(StoppingPolicy.EXACT_MATCH, policy.check(best(evolver, 1, 1, 100 * (1 + 1e-12), 1)));
+    }
+
+    @Test
+    public void exactMatch_forgetsMinimalSizeOnReset() {
+        StoppingPolicy policy = StoppingPolicy.exactMatch();
+        policy.reset();
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(newEvolver(420, 100, 100, 220), 0, 1, 420, 4)));
+        policy.reset();
+        assertEquals(StoppingPolicy.EXACT_MATCH, policy.check(best(newEvolver(320, 100, 220), 0, 1, 320, 2)));
+    }
+
+    @Test
+    public void errorThreshold_stopsWithinError() {
+        StoppingPolicy policy = StoppingPolicy.errorThreshold(0.01);
+        EvolveOptimalResistors evolver = newEvolver(320, 100, 220);
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(evolver, 0, 1, 320 * 1.02, 2)));
+        assertEquals(StoppingPolicy.ERROR_THRESHOLD, policy.check(best(evolver, 1, 1, 320 * 1.005, 2)));
+    }
+
+    @Test
+    public void totalFitnessDrop_stopsOnDrop() {
+        StoppingPolicy policy = StoppingPolicy.totalFitnessDrop();
+        EvolveOptimalResistors evolver = newEvolver(100, 100, 220);
+        policy.reset();
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(total(evolver, 0, 10)));
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(total(evolver, 1, 12)));
+        assertEquals(StoppingPolicy.TOTAL_FITNESS_DROP, policy.check(total(evolver, 2, 11)));
+    }
+
+    @Test
+    public void anyOf_returnsFirstReasonAndChecksEveryPolicy() {
+        CountingPolicy first = new CountingPolicy(StoppingPolicy.CONTINUE);
+        CountingPolicy second = new CountingPolicy(StoppingPolicy.STAGNATION);
+        CountingPolicy third = new CountingPolicy(StoppingPolicy.EXACT_MATCH);
+        StoppingPolicy policy = StoppingPolicy.anyOf(first, second, third);
+        EvolveOptimalResistors evolver = newEvolver(100, 100, 220);
+        assertEquals(StoppingPolicy.STAGNATION, policy.check(best(evolver, 0, 1, 0, 1)));
+        assertEquals(1, first.mNumChecks);
+        assertEquals(1, second.mNumChecks);
+        assertEquals(1, third.mNumChecks);
+        policy.reset();
+        assertEquals(1, first.mNumResets);
+        assertEquals(1, second.mNumResets);
+        assertEquals(1, third.mNumResets);
+    }
+
+    @Test
+    public void anyOf_continuesWhenNoneStop() {
+        StoppingPolicy policy = StoppingPolicy.anyOf(new CountingPolicy(StoppingPolicy.CONTINUE),
+                new CountingPolicy(StoppingPolicy.CONTINUE));
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(newEvolver(100, 100, 220), 0, 1, 0, 1)));
+        assertEquals(StoppingPolicy.CONTINUE, StoppingPolicy.anyOf().check(best(newEvolver(100, 100), 0, 1, 0, 1)));
+    }
+
+    @Test
+    public void evolve_resetsPolicyEveryRun() {
+        CountingPolicy policy = new CountingPolicy(StoppingPolicy.STAGNATION);
+        EvolveOptimalResistors evolver = EvolveOptimalResistorsTest.newEvolver(1);
+        evolver.setStoppingPolicy(policy);
+        evolver.evolve();
+        evolver.evolve();
+        assertEquals(2, policy.mNumResets);
+        assertEquals(2, policy.mNumChecks);
+        assertEquals(StoppingPolicy.STAGNATION, evolver.getStopReason());
+    }
+
+    /*
+    Policy that always returns the same reason and counts how it is called.
+     */
+    private static class CountingPolicy extends StoppingPolicy {
+        private final int mReason;
+        int mNumChecks;
+        int mNumResets;
+
+        CountingPolicy(int reason) {
+            mReason = reason;
+        }
+
+        @Override
+        public void reset() {
+            mNumResets ++;
+        }
+
+        @Override
+        public int check(Generation generation) {
+            mNumChecks ++;
+            return mReason;
+        }
+    }
+
+    private static void assertExactMatch(EvolveOptimalResistors target, double desired, int minSize) {
+        StoppingPolicy policy = StoppingPolicy.exactMatch();
+        policy.reset();
+        assertEquals(StoppingPolicy.CONTINUE, policy.check(best(target, 0, 1, desired, minSize + 1)));
+        assertEquals(StoppingPolicy.EXACT_MATCH, policy.check(best(target, 1, 1, desired, minSize)));
+    }
+
+    private static EvolveOptimalResistors newEvolver(double desired, double... resistances) {
+        Resistor[] resistors = new Resistor[resistances.length];
+        for(int i = 0; i < resistances.length; i ++)
+            resistors[i] = new Resistor(resistances[i]);
+        return new EvolveOptimalResistors(resistors, desired, 50, 1, 10, 1, 1, new RandomStream(1), new DNA[0]);
+    }
+
+    private static StoppingPolicy.Generation best(EvolveOptimalResistors evolver, int index, double bestFitness,
+                                                  double bestTotalResistance, int bestSize) {
+        return new StoppingPolicy.Generation(evolver, index, 0, bestFitness, bestTotalResistance, bestSize);
+    }
+
+    private static StoppingPolicy.Generation total(EvolveOptimalResistors evolver, int index, double totalFitness) {
+        return new StoppingPolicy.Generation(evolver, index, totalFitness, 1, 0, 1);
+    }
+}
@@ -0,0 +1,58 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every table entry decodes to a DNA that builds the same circuit.
+ */
+public class SubnetworkTableTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{10, 22, 47, 100, 220, 470, 1000},
+            new int[]{2, 1, 3, 1, 2, 1, 4});
+
+    @Test
+    public void toDNA_collapsesToEntry() {
+        SubnetworkTable table = new SubnetworkTable(INVENTORY, 4);
+        CollapseKernel kernel = new CollapseKernel(table.getAvailableResistors());
+        for(int entry = 0; entry < table.size(); entry ++) {
+            DNA dna = table.toDNA(entry);
+            kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+            double resistance = table.getResistance(entry);
+            assertEquals(resistance, kernel.getTotalResistance(), resistance * 1e-12);
+            assertEquals(SubnetworkTable.numParts(table.getParts(entry)), kernel.getSize());
+            assertEquals(table.getStructuralHash(entry), kernel.structuralHash(dna));
+        }
+    }
+
+    @Test
+    public void entries_areStructurallyDistinct() {
+        SubnetworkTable table = new SubnetworkTable(INVENTORY, 4);
+        Set<Long> hashes = new HashSet<>();
+        for(int entry = 0; entry < table.size(); entry ++)
+            assertTrue(hashes.add(table.getStructuralHash(entry)));
+    }
+
+    @Test
+    public void combinations_matchTheirDNA() {
+        final SubnetworkTable table = new SubnetworkTable(INVENTORY, 3);
+        final CollapseKernel kernel = new CollapseKernel(table.getAvailableResistors());
+        final int[] visited = new int[1];
+        table.forEachCombination(4, new SubnetworkTable.Visitor() {
+            @Override
+            public void visit(int left, int right, int connection, double resistance, long parts) {
+                DNA dna = table.toDNA(left, right, connection);
+                kernel.collapse(dna.getSurvivers(), dna.getReceivers(), dna.getGivers(), dna.getConnections());
+                assertEquals(resistance, kernel.getTotalResistance(), resistance * 1e-12);
+                assertEquals(4, kernel.getSize());
+                assertEquals(table.structuralHash(left, right, connection), kernel.structuralHash(dna));
+                visited[0] ++;
+            }
+        });
+        assertTrue(visited[0] > 0);
+    }
+}
@@ -0,0 +1,91 @@
+package optimizer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that UniqueTopK keeps the same circuits, in the same order, as sorting every offered DNA
+ * and skipping duplicate circuits.
+ */
+public class UniqueTopKTest {
+    private static final Inventory INVENTORY = new Inventory(
+            new double[]{1, 2.2, 4.7, 10, 22, 47, 100, 220, 470, 1000},
+            new int[]{3, 3, 3, 3, 3, 3, 3, 3, 3, 3});
+
+    @Test
+    public void toList_sameAsSortingEverything() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        for(int capacity : new int[]{1, 5, 40, 500}) {
+            DNA[] population = HallOfFameTest.evaluated(resistors, 300, capacity);
+            UniqueTopK topK = new UniqueTopK(capacity, resistors);
+            for(DNA one : population)
+                topK.offer(one);
+            List<DNA> expected = naiveTopK(population, capacity, resistors);
+            List<DNA> actual = topK.toList();
+            assertEquals(expected.size(), actual.size());
+            for(int i = 0; i < expected.size(); i ++)
+                assertEquals(expected.get(i).getFitness(), actual.get(i).getFitness(), 0);
+        }
+    }
+
+    @Test
+    public void toList_keepsEveryCircuitOnce() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        DNA[] population = HallOfFameTest.evaluated(resistors, 100, 7);
+        UniqueTopK topK = new UniqueTopK(20, resistors);
+        // Offered twice, and as copies, every circuit is still kept once.
+        for(DNA one : population)
+            topK.offer(one);
+        for(DNA one : population)
+            topK.offer(one.copy());
+        CollapseKernel kernel = new CollapseKernel(resistors);
+        Set<Long> hashes = new HashSet<>();
+        for(DNA one : topK.toList())
+            assertTrue(hashes.add(kernel.structuralHash(one)));
+        assertEquals(20, hashes.size());
+    }
+
+    @Test
+    public void threshold_followsLeastFitKept() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        DNA[] population = HallOfFameTest.evaluated(resistors, 100, 8);
+        UniqueTopK topK = new UniqueTopK(10, resistors);
+        assertEquals(Double.NEGATIVE_INFINITY, topK.threshold(), 0);
+        for(DNA one : population)
+            topK.offer(one);
+        List<DNA> kept = topK.toList();
+        assertEquals(kept.get(kept.size() - 1).getFitness(), topK.threshold(), 0);
+    }
+
+    @Test
+    public void zeroCapacity_keepsNothing() {
+        Resistor[] resistors = INVENTORY.toResistors();
+        UniqueTopK topK = new UniqueTopK(0, resistors);
+        assertEquals(Double.POSITIVE_INFINITY, topK.threshold(), 0);
+        for(DNA one : HallOfFameTest.evaluated(resistors, 10, 9))
+            topK.offer(one);
+        assertTrue(topK.toList().isEmpty());
+    }
+
+    /*
+    Sorts every DNA, most fit first, and keeps the first DNA of every circuit up to capacity.
+     */
+    private static List<DNA> naiveTopK(DNA[] population, int capacity, Resistor[] resistors) {
+        DNA[] sorted = population.clone();
+        Arrays.sort(sorted);
+        CollapseKernel kernel = new CollapseKernel(resistors);
+        Set<Long> hashes = new HashSet<>();
+        List<DNA> kept = new ArrayList<>();
+        for(DNA one : sorted)
+            if(kept.size() < capacity && hashes.add(kernel.structuralHash(one)))
+                kept.add(one);
+        return kept;
+    }
+}
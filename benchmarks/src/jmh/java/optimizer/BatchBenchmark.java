@@ -0,0 +1,60 @@
+package optimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bill of materials solved with BatchOptimizer, to compare against solving every target on its
+ * own with a freshly built index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class BatchBenchmark {
+    @Param({"100", "1000"})
+    public int inventorySize;
+
+    @Param({"50"})
+    public int numTargets;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Inventory mInventory;
+    private List<BatchOptimizer.Request> mRequests;
+
+    @Setup
+    public void setUp() {
+        mInventory = Inventory.fromResistances(BenchmarkInventory.resistances(inventorySize));
+        RandomStream random = new RandomStream(BenchmarkInventory.SEED);
+        mRequests = new ArrayList<>();
+        for(int i = 0; i < numTargets; i ++)
+            mRequests.add(new BatchOptimizer.Request(10 + random.nextInt(100000), 50));
+    }
+
+    @Benchmark
+    public List<List<Queue<DNADecipherUnit>>> solveBatch() {
+        return new BatchOptimizer(mInventory).solve(mRequests, 500, 3, 30, 10, parallelism,
+                new RandomStream(BenchmarkInventory.SEED));
+    }
+
+    @Benchmark
+    public List<List<Queue<DNADecipherUnit>>> solveOneByOne() {
+        List<List<Queue<DNADecipherUnit>>> results = new ArrayList<>();
+        for(BatchOptimizer.Request request : mRequests)
+            results.add(MainOptimizer.runAndGetQueues(new AchievableIndex(mInventory), request.getDesiredResistance(),
+                    request.getSizePriority(), 500, 3, 30, 10));
+        return results;
+    }
+}
@@ -0,0 +1,32 @@
+package optimizer;
+
+/**
+ * Builds reproducible inventories for the benchmarks.
+ */
+final class BenchmarkInventory {
+    /**
+     * Seed shared by every benchmark so runs are comparable.
+     */
+    static final long SEED = 20200125L;
+
+    /**
+     * E12 series, the most common resistor values in a decade.
+     */
+    private static final double[] E12 = {1.0, 1.2, 1.5, 1.8, 2.2, 2.7, 3.3, 3.9, 4.7, 5.6, 6.8, 8.2};
+
+    private BenchmarkInventory() {
+    }
+
+    /**
+     * Random E12 resistances between 10 and 820k ohms.
+     * @param size Number of resistors.
+     * @return Resistances.
+     */
+    static double[] resistances(int size) {
+        RandomStream random = new RandomStream(SEED);
+        double[] resistances = new double[size];
+        for(int i = 0; i < size; i ++)
+            resistances[i] = E12[random.nextInt(E12.length)] * Math.pow(10, 1 + random.nextInt(5));
+        return resistances;
+    }
+}
@@ -0,0 +1,40 @@
+package optimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breeding one child from two random parents.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CrossoverBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int inventorySize;
+
+    private DNA mMom;
+    private DNA mDad;
+    private RandomStream mRandom;
+
+    @Setup
+    public void setUp() {
+        mRandom = new RandomStream(BenchmarkInventory.SEED);
+        // Same upper percentage of survivors as a size priority of 50.
+        mMom = new DNA(inventorySize, 50, mRandom);
+        mDad = new DNA(inventorySize, 50, mRandom);
+    }
+
+    @Benchmark
+    public DNA crossover() {
+        return mMom.crossover(mDad, 3, mRandom);
+    }
+}
@@ -0,0 +1,45 @@
+package optimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole search as the app runs it: greedy seeding, evolution and result extraction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class EvolveBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int inventorySize;
+
+    @Param({"47", "1234", "98765"})
+    public double target;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private double[] mResistances;
+
+    @Setup
+    public void setUp() {
+        mResistances = BenchmarkInventory.resistances(inventorySize);
+    }
+
+    @Benchmark
+    public List<Queue<DNADecipherUnit>> evolve() {
+        // Same parameters as MainActivity.
+        return MainOptimizer.runAndGetQueues(mResistances.clone(), target, 50, 3000, 3, 50, parallelism,
+                new RandomStream(BenchmarkInventory.SEED), 10);
+    }
+}
@@ -0,0 +1,42 @@
+package optimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fitness evaluation of one full population of 3000 DNA.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FitnessBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int inventorySize;
+
+    @Param({"47", "1234", "98765"})
+    public double target;
+
+    private EvolveOptimalResistors mGeneticAlgo;
+
+    @Setup
+    public void setUp() {
+        RandomStream random = new RandomStream(BenchmarkInventory.SEED);
+        GreedySubcircuits greedyAlgo = new GreedySubcircuits(BenchmarkInventory.resistances(inventorySize), target);
+        greedyAlgo.generateDNA(3000 * GreedySubcircuits.DEFAULT_SEED_PERCENT / 100);
+        mGeneticAlgo = new EvolveOptimalResistors(greedyAlgo.getFormattedResistances(), target, 50, 3000, 3, 50, 1,
+                random, greedyAlgo.getDNA());
+    }
+
+    @Benchmark
+    public double computeAllFitness() {
+        return mGeneticAlgo.evaluateFitness();
+    }
+}
@@ -0,0 +1,56 @@
+package optimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Greedy seeding of the initial population.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GreedyBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int inventorySize;
+
+    @Param({"47", "1234", "98765"})
+    public double target;
+
+    private GreedySubcircuits mGreedyAlgo;
+    private int mNextStart;
+
+    @Setup
+    public void setUp() {
+        mGreedyAlgo = new GreedySubcircuits(BenchmarkInventory.resistances(inventorySize), target);
+    }
+
+    /**
+     * Seeds for the default population on one thread.
+     */
+    @Benchmark
+    public DNA[] generateDNA() {
+        mGreedyAlgo.generateDNA(EvolveOptimalResistors.DEFAULT_POP_SIZE * GreedySubcircuits.DEFAULT_SEED_PERCENT / 100);
+        return mGreedyAlgo.getDNA();
+    }
+
+    @Benchmark
+    public DNA[] generateDNAInParallel() {
+        mGreedyAlgo.generateDNA(EvolveOptimalResistors.DEFAULT_POP_SIZE * GreedySubcircuits.DEFAULT_SEED_PERCENT / 100,
+                EvolveOptimalResistors.DEFAULT_PARALLELISM);
+        return mGreedyAlgo.getDNA();
+    }
+
+    @Benchmark
+    public DNA growOn() {
+        mNextStart = (mNextStart + 1) % inventorySize;
+        return mGreedyAlgo.growOnTest(mNextStart);
+    }
+}
@@ -0,0 +1,45 @@
+package optimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole search with the population split into islands, to compare against EvolveBenchmark with
+ * the same total population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class IslandBenchmark {
+    @Param({"100", "1000"})
+    public int inventorySize;
+
+    @Param({"1234"})
+    public double target;
+
+    @Param({"1", "2", "4"})
+    public int numIslands;
+
+    private Inventory mInventory;
+
+    @Setup
+    public void setUp() {
+        mInventory = Inventory.fromResistances(BenchmarkInventory.resistances(inventorySize));
+    }
+
+    @Benchmark
+    public List<Queue<DNADecipherUnit>> evolveIslands() {
+        return MainOptimizer.runIslandsAndGetQueues(mInventory, target, 50, 3000, 3, 50, numIslands,
+                new RandomStream(BenchmarkInventory.SEED), 10);
+    }
+}
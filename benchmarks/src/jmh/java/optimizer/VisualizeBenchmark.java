@@ -0,0 +1,48 @@
+package optimizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning the 10 most fit DNA into RPN queues and visual strings, as done for every search result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VisualizeBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    public int inventorySize;
+
+    @Param({"47", "1234", "98765"})
+    public double target;
+
+    private EvolveOptimalResistors mGeneticAlgo;
+    private DNA[] mTopDNA;
+
+    @Setup
+    public void setUp() {
+        RandomStream random = new RandomStream(BenchmarkInventory.SEED);
+        GreedySubcircuits greedyAlgo = new GreedySubcircuits(BenchmarkInventory.resistances(inventorySize), target);
+        greedyAlgo.generateDNA(300 * GreedySubcircuits.DEFAULT_SEED_PERCENT / 100);
+        // A short run is enough to get realistic circuits.
+        mGeneticAlgo = new EvolveOptimalResistors(greedyAlgo.getFormattedResistances(), target, 50, 300, 3, 10, 1,
+                random, greedyAlgo.getDNA());
+        mGeneticAlgo.evolve();
+        mTopDNA = mGeneticAlgo.mostFitDNA(10);
+    }
+
+    @Benchmark
+    public void visualizeDNA(Blackhole blackhole) {
+        for(DNA dna : mTopDNA)
+            blackhole.consume(EvolveOptimalResistors.visualizeDNA(mGeneticAlgo.RPNQueue(dna), true));
+    }
+}